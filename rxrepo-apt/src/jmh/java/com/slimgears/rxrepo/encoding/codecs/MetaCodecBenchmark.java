@@ -0,0 +1,103 @@
+package com.slimgears.rxrepo.encoding.codecs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
+import com.slimgears.rxrepo.encoding.MetaCodecProvider;
+import com.slimgears.rxrepo.encoding.MetaCodecs;
+import com.slimgears.rxrepo.encoding.MetaContext;
+import com.slimgears.rxrepo.encoding.MetaContexts;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
+import com.slimgears.rxrepo.queries.TestEntity;
+import com.slimgears.rxrepo.queries.TestEntityPrototype;
+import com.slimgears.rxrepo.queries.TestKey;
+import com.slimgears.rxrepo.queries.TestRefEntity;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares per-field codec and field name lookups through {@link MetaCodecs#cachedOf(MetaCodecProvider)}
+ * ({@link TypeToken}-keyed) and {@link MetaClassFieldMapper}, with lookups through {@link ResolvedCodec}
+ * and {@link FieldNameTable}, as used by codecs. Encoding and decoding of the entity (by generated codec)
+ * is measured as well, to show the share of lookups in the whole.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings("UnstableApiUsage")
+public class MetaCodecBenchmark {
+    private final MetaCodecProvider codecProvider = MetaCodecs.builder()
+            .discover()
+            .add(TypeToken.of(TestKey.class), MetaCodecs.stringAdapter(TestKey::name, TestKey::create))
+            .build();
+    private final MetaContext context = MetaContexts.create(codecProvider);
+    private final BinaryAdapter.FieldDictionary dictionary = BinaryAdapter.FieldDictionary.of(TestEntity.metaClass);
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final TestEntity entity = TestEntity
+            .builder()
+            .address("Address")
+            .key(TestKey.create("Key1"))
+            .number(10)
+            .text("Text10")
+            .refEntityId(2)
+            .refEntityText("Text1")
+            .enumVal(TestEntityPrototype.TestEnum.Val2)
+            .refEntities(ImmutableList.of(TestRefEntity.create(4, "Test4", null)))
+            .build();
+
+    private List<PropertyMeta<TestEntity, ?>> properties;
+    private List<ResolvedCodec<?>> resolvedCodecs;
+    private FieldNameTable<TestEntity> fieldNameTable;
+
+    @Setup
+    public void setUp() {
+        properties = ImmutableList.copyOf(TestEntity.metaClass.properties());
+        resolvedCodecs = properties.stream()
+                .<ResolvedCodec<?>>map(p -> ResolvedCodec.of(p.type()))
+                .collect(Collectors.toList());
+        fieldNameTable = FieldNameTable.create(TestEntity.metaClass, context.fieldMapper());
+    }
+
+    @Benchmark
+    public void lookupByTypeToken(Blackhole blackhole) {
+        MetaClassFieldMapper fieldMapper = context.fieldMapper();
+        for (PropertyMeta<TestEntity, ?> property : properties) {
+            blackhole.consume(codecProvider.resolve(property.type()));
+            blackhole.consume(fieldMapper.toFieldName(property));
+        }
+    }
+
+    @Benchmark
+    public void lookupByResolvedCodec(Blackhole blackhole) {
+        for (int i = 0; i < properties.size(); ++i) {
+            blackhole.consume(resolvedCodecs.get(i).get(context));
+            blackhole.consume(fieldNameTable.toFieldName(properties.get(i)));
+        }
+    }
+
+    @Benchmark
+    public TestEntity encodeDecode() {
+        buffer.clear();
+        context.write(BinaryAdapter.writer(buffer, dictionary), entity);
+        buffer.flip();
+        return context.read(BinaryAdapter.reader(buffer, dictionary), TestEntity.metaClass.asType());
+    }
+}
@@ -0,0 +1,106 @@
+package com.slimgears.rxrepo.apt;
+
+import com.google.auto.service.AutoService;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Verifies {@code @CompositeIndex} declarations: every listed name should refer to a property
+ * of the annotated entity, and should be listed only once.
+ */
+@AutoService(Processor.class)
+@SupportedAnnotationTypes({
+        CompositeIndexProcessor.compositeIndexTypeName,
+        CompositeIndexProcessor.compositeIndexListTypeName})
+public class CompositeIndexProcessor extends AbstractProcessor {
+    final static String compositeIndexTypeName = "com.slimgears.rxrepo.annotations.CompositeIndex";
+    final static String compositeIndexListTypeName = "com.slimgears.rxrepo.annotations.CompositeIndex.List";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<Element> elements = annotations.stream()
+                .flatMap(annotation -> roundEnv.getElementsAnnotatedWith(annotation).stream())
+                .collect(Collectors.toSet());
+        ElementFilter.typesIn(elements).forEach(this::verify);
+        return false;
+    }
+
+    private void verify(TypeElement typeElement) {
+        Set<String> propertyNames = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(typeElement))
+                .stream()
+                .filter(method -> method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID)
+                .map(method -> method.getSimpleName().toString())
+                .collect(Collectors.toSet());
+
+        typeElement.getAnnotationMirrors()
+                .stream()
+                .flatMap(this::compositeIndexesOf)
+                .forEach(compositeIndex -> {
+                    List<String> names = valuesOf(compositeIndex, "value")
+                            .stream()
+                            .map(value -> (String)value.getValue())
+                            .collect(Collectors.toList());
+                    if (names.isEmpty()) {
+                        error(typeElement, compositeIndex, "Composite index should contain at least one property");
+                    }
+                    Set<String> visited = new HashSet<>();
+                    names.forEach(name -> {
+                        if (!propertyNames.contains(name)) {
+                            error(typeElement, compositeIndex, "Unknown property '" + name + "' in composite index");
+                        } else if (!visited.add(name)) {
+                            error(typeElement, compositeIndex, "Property '" + name + "' is listed more than once in composite index");
+                        }
+                    });
+                });
+    }
+
+    private Stream<AnnotationMirror> compositeIndexesOf(AnnotationMirror annotation) {
+        String typeName = ((TypeElement)annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+        if (compositeIndexTypeName.equals(typeName)) {
+            return Stream.of(annotation);
+        }
+        if (compositeIndexListTypeName.equals(typeName)) {
+            return valuesOf(annotation, "value").stream().map(value -> (AnnotationMirror)value.getValue());
+        }
+        return Stream.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<? extends AnnotationValue> valuesOf(AnnotationMirror annotation, String name) {
+        return processingEnv.getElementUtils().getElementValuesWithDefaults(annotation)
+                .entrySet()
+                .stream()
+                .filter(entry -> name.contentEquals(entry.getKey().getSimpleName()))
+                .map(Map.Entry::getValue)
+                .map(value -> (List<? extends AnnotationValue>)value.getValue())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Annotation " + annotation + " has no attribute " + name));
+    }
+
+    private void error(Element element, AnnotationMirror annotation, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, annotation);
+    }
+}
@@ -5,16 +5,31 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
 import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
+import com.slimgears.rxrepo.encoding.codecs.MetaClassCodec;
 import com.slimgears.rxrepo.queries.TestEntity;
 import com.slimgears.rxrepo.queries.TestEntityPrototype;
 import com.slimgears.rxrepo.queries.TestKey;
 import com.slimgears.rxrepo.queries.TestRefEntity;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class MetaClassCodecTest {
     private final MetaCodecProvider codecProvider = MetaCodecs.builder()
@@ -49,10 +64,148 @@ public class MetaClassCodecTest {
         }
     }
 
+    @Test
+    public void testGeneratedCodecIsResolved() {
+        Assert.assertTrue(codecProvider.resolve(TestEntity.class) instanceof TestEntity.Codec);
+    }
+
+    @Test
+    public void testGeneratedCodecWithCustomFieldMapper() throws IOException {
+        MetaContext context = MetaContexts.create(codecProvider, new MetaClassFieldMapper() {
+            @Override
+            public <K, S> String keyField(MetaClassWithKey<K, S> metaClassWithKey) {
+                return "_id";
+            }
+        });
+        StringWriter stringWriter = new StringWriter();
+        try (JsonGenerator generator = factory.createGenerator(stringWriter)) {
+            context.write(JacksonAdapter.writer(generator), testEntity);
+        }
+        String json = stringWriter.toString();
+        Assert.assertTrue(json.startsWith("{\"_id\":\"Key1\","));
+        try (JsonParser parser = factory.createParser(json)) {
+            TestEntity decodedEntity = context.read(JacksonAdapter.reader(parser), TestEntity.metaClass.asType());
+            Assert.assertEquals(testEntity, decodedEntity);
+        }
+    }
+
+    @Test
+    public void testGeneratedCodecBinaryEncodingDecoding() {
+        MetaContext context = MetaContexts.create(codecProvider, new MetaClassFieldMapper() {
+            @Override
+            public <K, S> String keyField(MetaClassWithKey<K, S> metaClassWithKey) {
+                return "_id";
+            }
+        });
+        TestEntity entity = testEntity.toBuilder()
+                .refEntity(TestRefEntity.create(2, "Text2", TestRefEntity.create(3, "Text3", null)))
+                .refEntities(IntStream.range(0, 20)
+                        .mapToObj(i -> TestRefEntity.create(i, "Text" + i, null))
+                        .collect(ImmutableList.toImmutableList()))
+                .build();
+        BinaryAdapter.FieldDictionary dictionary = BinaryAdapter.FieldDictionary.of(TestEntity.metaClass);
+
+        BinaryAdapter.Writer writer = BinaryAdapter.writer(dictionary);
+        context.write(writer, entity);
+        ByteBuffer buffer = writer.toByteBuffer();
+
+        TestEntity decodedEntity = context.read(BinaryAdapter.reader(buffer.duplicate(), dictionary), TestEntity.metaClass.asType());
+        Assert.assertEquals(entity, decodedEntity);
+
+        String bytes = StandardCharsets.ISO_8859_1.decode(buffer.duplicate()).toString();
+        Assert.assertEquals("Name, missing in dictionary, is expected to be defined once", bytes.indexOf("_id"), bytes.lastIndexOf("_id"));
+        Assert.assertFalse("Names of dictionary are expected to be written as ids", bytes.contains("refEntities"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testDecodeBatchResolvesReferencesBySingleLookup() {
+        AtomicInteger resolveCount = new AtomicInteger();
+        AtomicInteger resolveAllCount = new AtomicInteger();
+        MetaObjectResolver resolver = new MetaObjectResolver() {
+            @Override
+            public <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key) {
+                resolveCount.incrementAndGet();
+                return Maybe.just((S)refEntity((Integer)key));
+            }
+
+            @Override
+            public <K, S> Observable<S> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+                resolveAllCount.incrementAndGet();
+                return Observable.fromIterable(keys).map(key -> (S)refEntity((Integer)key));
+            }
+        };
+        MetaContext context = MetaContexts.create(
+                MetaClassCodec.withResolver(resolver, () -> MetaCodecs.builder()
+                        .discover()
+                        .add(TypeToken.of(TestKey.class), MetaCodecs.stringAdapter(TestKey::name, TestKey::create))
+                        .build()),
+                new ReferenceFieldMapper());
+
+        List<TestEntity> entities = IntStream.range(0, 10)
+                .mapToObj(i -> TestEntity
+                        .builder()
+                        .key(TestKey.create("Key" + i))
+                        .text("Text" + i)
+                        .number(i)
+                        .refEntity(refEntity(i % 3))
+                        .refEntities(ImmutableList.of())
+                        .build())
+                .collect(Collectors.toList());
+        List<String> jsons = entities.stream().map(entity -> toJson(context, entity)).collect(Collectors.toList());
+
+        List<TestEntity> decodedEntities = MetaClassCodec
+                .decodeBatch(resolver, jsons, json -> fromJson(context, json))
+                .blockingGet();
+
+        Assert.assertEquals(entities, decodedEntities);
+        Assert.assertEquals(1, resolveAllCount.get());
+        Assert.assertEquals(0, resolveCount.get());
+    }
+
     @Test
     public void testToDocumentFromDocument() {
         MetaDocument doc = MetaDocuments.toDocument(testEntity);
         TestEntity decodedEntity = MetaDocuments.fromDocument(doc, TestEntity.metaClass);
         Assert.assertEquals(testEntity, decodedEntity);
     }
+
+    private static TestRefEntity refEntity(int id) {
+        return TestRefEntity.create(id, "Text" + id, null);
+    }
+
+    private String toJson(MetaContext context, TestEntity entity) {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonGenerator generator = factory.createGenerator(stringWriter)) {
+            context.write(JacksonAdapter.writer(generator), entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    private TestEntity fromJson(MetaContext context, String json) {
+        try (JsonParser parser = factory.createParser(json)) {
+            return context.read(JacksonAdapter.reader(parser), TestEntity.metaClass.asType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class ReferenceFieldMapper implements MetaClassFieldMapper {
+        @Override
+        public <T, V> String toReferenceFieldName(PropertyMeta<T, V> propertyMeta) {
+            return toFieldName(propertyMeta) + "__ref";
+        }
+
+        @Override
+        public <T, V> PropertyMeta<T, V> fromReferenceFieldName(MetaClass<T> metaClass, String name) {
+            return fromFieldName(metaClass, name.substring(0, name.length() - "__ref".length()));
+        }
+
+        @Override
+        public boolean isReferenceFieldName(String field) {
+            return field.endsWith("__ref");
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package com.slimgears.rxrepo.encoding;
+
+import com.slimgears.rxrepo.queries.TestEntity;
+import com.slimgears.rxrepo.queries.TestRefEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class MetaClassSearchableFieldsTest {
+    @Test
+    public void testSearchableTextIsCachedPerInstance() {
+        TestEntity entity = entity(1);
+        String text = MetaClassSearchableFields.searchableTextFromObject(entity);
+        Assert.assertTrue(text, text.contains("Entity 1"));
+        Assert.assertSame(text, MetaClassSearchableFields.searchableTextFromObject(entity));
+    }
+
+    @Test
+    public void testSearchableTextCacheIsBounded() {
+        List<TestEntity> entities = IntStream.range(0, MetaClassSearchableFields.maxCachedSearchableTexts * 2)
+                .mapToObj(MetaClassSearchableFieldsTest::entity)
+                .collect(Collectors.toList());
+
+        entities.forEach(entity -> Assert.assertTrue(MetaClassSearchableFields
+                .searchableTextFromObject(entity)
+                .contains("Entity " + entity.number())));
+
+        Assert.assertTrue(MetaClassSearchableFields.cachedSearchableTextCount() <= MetaClassSearchableFields.maxCachedSearchableTexts);
+    }
+
+    private static TestEntity entity(int number) {
+        return TestEntity.builder()
+                .keyName("Key " + number)
+                .number(number)
+                .text("Entity " + number)
+                .refEntity(TestRefEntity.builder().id(number).text("Ref " + number).build())
+                .refEntities(Collections.emptyList())
+                .build();
+    }
+}
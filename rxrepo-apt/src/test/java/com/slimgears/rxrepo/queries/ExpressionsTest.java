@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.annotations.Filterable;
 import com.slimgears.rxrepo.annotations.Indexable;
 import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.filters.ComparableFilter;
 import com.slimgears.rxrepo.filters.ComparableFilter;
@@ -19,6 +20,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.slimgears.rxrepo.filters.ComparableFilter.fromGreaterOrEqual;
 import static com.slimgears.rxrepo.filters.ComparableFilter.fromLessThan;
@@ -153,6 +156,30 @@ public class ExpressionsTest {
         Assert.assertFalse(exp.apply(testEntity2));
     }
 
+    @Test
+    public void testValueInLargeCollectionExpression() {
+        List<String> strings = IntStream.range(0, 10000).mapToObj(i -> "Entity " + (i + 2)).collect(Collectors.toList());
+        Function<TestEntity, Boolean> exp = Expressions
+                .compile(TestEntity.$.text.in(strings));
+
+        Assert.assertFalse(exp.apply(testEntity1));
+        Assert.assertTrue(exp.apply(testEntity2));
+    }
+
+    @Test
+    public void testMatchesAndCaseInsensitiveExpressions() {
+        Function<TestEntity, Boolean> matches = Expressions
+                .compile(TestEntity.$.text.matches("Entity [1-5]"));
+        Function<TestEntity, Boolean> containsIgnoreCase = Expressions
+                .compile(TestEntity.$.text.toLower().contains(ConstantExpression.<TestEntity>of("TITY 1").toLower()));
+
+        Assert.assertTrue(matches.apply(testEntity1));
+        Assert.assertTrue(matches.apply(testEntity2));
+        Assert.assertFalse(Expressions.compile(TestEntity.$.address.matches("A.*")).apply(testEntity1));
+        Assert.assertTrue(containsIgnoreCase.apply(testEntity1));
+        Assert.assertFalse(containsIgnoreCase.apply(testEntity2));
+    }
+
     @Test
     public void testNullExpression() {
         Function<TestEntity, Boolean> exp = Expressions
@@ -539,4 +566,28 @@ public class ExpressionsTest {
                 Expressions.compose(
                         TestEntity.$.refEntity, TestRefEntity.$.id.notEq(1).and(TestRefEntity.$.text.betweenExclusive("1", "2"))));
     }
+
+    @Test
+    public void testSpecializedCompilerMatchesDefaultCompiler() {
+        List<ObjectExpression<TestEntity, ?>> expressions = ImmutableList.of(
+                TestEntity.$.text,
+                TestEntity.$.refEntity.text,
+                TestEntity.$.number.greaterThan(5),
+                TestEntity.$.number.lessThan(5).and(TestEntity.$.refEntity.id.eq(10)),
+                TestEntity.$.code.greaterThan(1),
+                TestEntity.$.address.eq("Address").or(TestEntity.$.address.isNull()),
+                TestEntity.$.text.in(Collections.singletonList("Entity 1")),
+                TestEntity.$.number.add(TestEntity.$.text.length()).mul(100));
+
+        for (ObjectExpression<TestEntity, ?> expression : expressions) {
+            Function<TestEntity, ?> defaultFunc = Expressions.compile(expression);
+            Function<TestEntity, ?> specializedFunc = Expressions.compileSpecialized(expression);
+            Assert.assertEquals(expression.toString(), defaultFunc.apply(testEntity1), specializedFunc.apply(testEntity1));
+            Assert.assertEquals(expression.toString(), defaultFunc.apply(testEntity2), specializedFunc.apply(testEntity2));
+        }
+
+        // Same shape, different constant: template is reused, constant is re-bound
+        Assert.assertTrue(Expressions.compileSpecialized(TestEntity.$.number.greaterThan(2)).apply(testEntity1));
+        Assert.assertFalse(Expressions.compileSpecialized(TestEntity.$.number.greaterThan(3)).apply(testEntity1));
+    }
 }
@@ -0,0 +1,171 @@
+package com.slimgears.rxrepo.queries;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.ListChange;
+import com.slimgears.rxrepo.query.ListUpdate;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.NotificationsToSlidingListTransformer;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class NotificationsToSlidingListTransformerTest {
+    private final AtomicLong firstItemIndex = new AtomicLong();
+    private final Subject<List<Notification<TestEntity>>> notifications = PublishSubject.create();
+    private TestObserver<ListUpdate<TestEntity>> observer;
+
+    @Before
+    public void setUp() {
+        NotificationsToSlidingListTransformer<TestKey, TestEntity> transformer = NotificationsToSlidingListTransformer.create(
+                TestEntity.metaClass,
+                ImmutableList.<SortingInfo<TestEntity, ?, ? extends Comparable<?>>>of(SortingInfo.create(TestEntity.$.number, true)),
+                3L,
+                firstItemIndex);
+        observer = notifications.compose(transformer.withChanges()).test();
+    }
+
+    @Test
+    public void testInsertsAtWindowEdges() {
+        ListUpdate<TestEntity> update = update(created("a", 10), created("b", 20), created("c", 30), created("d", 40));
+        assertList(update, "a", "b", "c");
+        Map<String, ListChange<TestEntity>> changes = changesOf(update);
+        Assert.assertEquals(3, changes.size());
+        assertInserted(changes.get("a"), 0);
+        assertInserted(changes.get("b"), 1);
+        assertInserted(changes.get("c"), 2);
+
+        // Before the first item: window is not changed, but is shifted by one
+        update = update(created("e", 5));
+        assertList(update, "a", "b", "c");
+        Assert.assertTrue(update.changes().isEmpty());
+        Assert.assertEquals(1, firstItemIndex.get());
+
+        // Within the window, next to the last item: the last item is pushed out of the window
+        update = update(created("f", 25));
+        assertList(update, "a", "b", "f");
+        changes = changesOf(update);
+        Assert.assertEquals(2, changes.size());
+        assertInserted(changes.get("f"), 2);
+        assertRemoved(changes.get("c"), 2);
+
+        // After the last item of full window
+        update = update(created("g", 35));
+        assertList(update, "a", "b", "f");
+        Assert.assertTrue(update.changes().isEmpty());
+    }
+
+    @Test
+    public void testDeletesAtWindowEdges() {
+        assertList(update(created("a", 10), created("b", 20), created("c", 30)), "a", "b", "c");
+
+        ListUpdate<TestEntity> update = update(deleted("a", 10));
+        assertList(update, "b", "c");
+        Map<String, ListChange<TestEntity>> changes = changesOf(update);
+        Assert.assertEquals(1, changes.size());
+        assertRemoved(changes.get("a"), 0);
+        Assert.assertEquals(0, firstItemIndex.get());
+
+        update = update(deleted("c", 30));
+        assertList(update, "b");
+        changes = changesOf(update);
+        Assert.assertEquals(1, changes.size());
+        assertRemoved(changes.get("c"), 1);
+    }
+
+    @Test
+    public void testModifyReordersItems() {
+        assertList(update(created("a", 10), created("b", 20), created("c", 30)), "a", "b", "c");
+
+        ListUpdate<TestEntity> update = update(modified("a", 10, 25));
+        assertList(update, "b", "a", "c");
+        Map<String, ListChange<TestEntity>> changes = changesOf(update);
+        Assert.assertEquals(1, changes.size());
+        assertMoved(changes.get("a"), 0, 1);
+
+        update = update(modified("c", 30, 22));
+        assertList(update, "b", "c", "a");
+        changes = changesOf(update);
+        Assert.assertEquals(1, changes.size());
+        assertMoved(changes.get("c"), 2, 1);
+
+        // Modified in place
+        update = update(modified("b", 20, 21));
+        assertList(update, "b", "c", "a");
+        assertMoved(changesOf(update).get("b"), 0, 0);
+        Assert.assertEquals(21, update.list().get(0).number());
+
+        // Moved before the first item: leaves the window, which is shifted by one
+        update = update(modified("a", 25, 1));
+        assertList(update, "b", "c");
+        assertRemoved(changesOf(update).get("a"), 2);
+        Assert.assertEquals(1, firstItemIndex.get());
+    }
+
+    @SafeVarargs
+    private final ListUpdate<TestEntity> update(Notification<TestEntity>... batch) {
+        int count = observer.valueCount();
+        notifications.onNext(Arrays.asList(batch));
+        observer.assertNoErrors().assertValueCount(count + 1);
+        return observer.values().get(count);
+    }
+
+    private static TestEntity entity(String name, int number) {
+        return TestEntity.builder()
+                .keyName(name)
+                .number(number)
+                .text(TestEntities.textEntity1)
+                .refEntity(TestEntities.testEntity1.refEntity())
+                .refEntities(Collections.emptyList())
+                .build();
+    }
+
+    private static Notification<TestEntity> created(String name, int number) {
+        return Notification.ofCreated(entity(name, number), 0L);
+    }
+
+    private static Notification<TestEntity> deleted(String name, int number) {
+        return Notification.ofDeleted(entity(name, number), 0L);
+    }
+
+    private static Notification<TestEntity> modified(String name, int oldNumber, int newNumber) {
+        return Notification.ofModified(entity(name, oldNumber), entity(name, newNumber), 0L);
+    }
+
+    private static void assertList(ListUpdate<TestEntity> update, String... names) {
+        Assert.assertEquals(
+                Arrays.asList(names),
+                update.list().stream().map(e -> e.key().name()).collect(Collectors.toList()));
+    }
+
+    private static Map<String, ListChange<TestEntity>> changesOf(ListUpdate<TestEntity> update) {
+        return update.changes().stream().collect(Collectors.toMap(c -> c.item().key().name(), Function.identity()));
+    }
+
+    private static void assertInserted(ListChange<TestEntity> change, int newIndex) {
+        Assert.assertTrue(change.isInsert());
+        Assert.assertEquals(Integer.valueOf(newIndex), change.newIndex());
+    }
+
+    private static void assertRemoved(ListChange<TestEntity> change, int oldIndex) {
+        Assert.assertTrue(change.isRemove());
+        Assert.assertEquals(Integer.valueOf(oldIndex), change.oldIndex());
+    }
+
+    private static void assertMoved(ListChange<TestEntity> change, int oldIndex, int newIndex) {
+        Assert.assertTrue(change.isMove());
+        Assert.assertEquals(Integer.valueOf(oldIndex), change.oldIndex());
+        Assert.assertEquals(Integer.valueOf(newIndex), change.newIndex());
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class QueriesTest {
@@ -32,6 +33,18 @@ public class QueriesTest {
         Assert.assertEquals(530, list.get(3).number());
     }
 
+    @Test
+    public void testSortedTopKMatchesFullSorting() {
+        Comparator<TestEntity> comparator = Comparator.comparing(e -> e.refEntity().id());
+        Observable<TestEntity> entities = createTestEntities(1000);
+
+        for (long count : new long[] {0, 1, 15, 999, 1000, 1500}) {
+            Assert.assertEquals(
+                    entities.sorted(comparator).take(count).toList().blockingGet(),
+                    entities.compose(Queries.sortedTopK(comparator, count)).toList().blockingGet());
+        }
+    }
+
     private static Observable<TestEntity> createTestEntities(int count) {
         return Observable.range(0, count)
                 .map(i -> TestEntity.builder()
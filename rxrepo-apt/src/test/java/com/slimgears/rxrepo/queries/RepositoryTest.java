@@ -3,11 +3,14 @@ package com.slimgears.rxrepo.queries;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.functions.Function;
 import io.reactivex.observers.TestObserver;
 import io.reactivex.subjects.ReplaySubject;
 import io.reactivex.subjects.Subject;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -15,7 +18,10 @@ import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -76,4 +82,42 @@ public class RepositoryTest {
                 .assertNoTimeout()
                 .assertValueAt(1, l -> l.size() == 2);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTransactionIsRetriedOnConcurrentModification() {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger bodyInvocations = new AtomicInteger();
+        when(mockQueryProvider.transaction(any())).thenAnswer(invocation -> {
+            Function<QueryProvider, Completable> body = invocation.getArgument(0);
+            return body.apply(mockQueryProvider)
+                    .andThen(attempts.incrementAndGet() < 3
+                            ? Completable.error(new ConcurrentModificationException("Concurrent modification detected"))
+                            : Completable.complete());
+        });
+
+        repository.transaction(tx -> Completable.fromAction(bodyInvocations::incrementAndGet))
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertNoErrors()
+                .assertComplete();
+
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(3, bodyInvocations.get());
+    }
+
+    @Test
+    public void testTransactionIsNotRetriedOnOtherErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(mockQueryProvider.transaction(any())).thenAnswer(invocation -> {
+            attempts.incrementAndGet();
+            return Completable.error(new IllegalStateException("Transaction failed"));
+        });
+
+        repository.transaction(tx -> Completable.complete())
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertError(IllegalStateException.class);
+
+        Assert.assertEquals(1, attempts.get());
+    }
+}
@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.annotations.Filterable;
 import com.slimgears.rxrepo.annotations.Indexable;
 import com.slimgears.rxrepo.annotations.Searchable;
 import com.slimgears.rxrepo.annotations.UseFilters;
+import com.slimgears.rxrepo.annotations.UseMetaCodec;
 import com.slimgears.util.autovalue.annotations.AutoValuePrototype;
 import com.slimgears.util.autovalue.annotations.Key;
 import com.slimgears.util.autovalue.annotations.UseCopyAnnotator;
@@ -13,6 +14,7 @@ import java.util.Collection;
 
 @AutoValuePrototype
 @UseFilters
+@UseMetaCodec
 @UseCopyAnnotator
 public interface TestEntityPrototype {
     enum TestEnum {
@@ -0,0 +1,127 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.queries.TestEntity;
+import com.slimgears.rxrepo.queries.TestRefEntity;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LiveQueryDispatcherTest {
+    private final Subject<Notification<TestEntity>> upstream = PublishSubject.create();
+    private final AtomicInteger subscribeCount = new AtomicInteger();
+    private final AtomicInteger disposeCount = new AtomicInteger();
+    private LiveQueryDispatcher<TestEntity> dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = LiveQueryDispatcher.create(upstream
+                .doOnSubscribe(d -> subscribeCount.incrementAndGet())
+                .doOnDispose(disposeCount::incrementAndGet));
+    }
+
+    @Test
+    public void testNotificationsAreRoutedByPredicate() {
+        TestObserver<Notification<TestEntity>> indexedObserver = dispatcher.observe(TestEntity.$.number.eq(3)).test();
+        TestObserver<Notification<TestEntity>> indexedConjunctionObserver = dispatcher
+                .observe(TestEntity.$.number.eq(8).and(TestEntity.$.text.eq("Entity 8")))
+                .test();
+        TestObserver<Notification<TestEntity>> unindexedObserver = dispatcher.observe(TestEntity.$.number.greaterThan(5)).test();
+        TestObserver<Notification<TestEntity>> allObserver = dispatcher.observe(null).test();
+
+        Notification<TestEntity> created3 = Notification.ofCreated(entity("a", 3), 1L);
+        Notification<TestEntity> created8 = Notification.ofCreated(entity("b", 8), 2L);
+        Notification<TestEntity> created10 = Notification.ofCreated(entity("c", 10), 3L);
+        Notification<TestEntity> created8WithOtherText = Notification.ofCreated(entity("d", 8).toBuilder().text("Other").build(), 4L);
+
+        upstream.onNext(created3);
+        upstream.onNext(created8);
+        upstream.onNext(created10);
+        upstream.onNext(created8WithOtherText);
+
+        indexedObserver.assertNoErrors().assertValues(created3);
+        indexedConjunctionObserver.assertNoErrors().assertValues(created8);
+        unindexedObserver.assertNoErrors().assertValues(created8, created10, created8WithOtherText);
+        allObserver.assertNoErrors().assertValues(created3, created8, created10, created8WithOtherText);
+        Assert.assertEquals(1, subscribeCount.get());
+    }
+
+    @Test
+    public void testModificationsMovingIntoAndOutOfPredicateAreDelivered() {
+        TestObserver<Notification<TestEntity>> indexedObserver = dispatcher.observe(TestEntity.$.number.eq(3)).test();
+        TestObserver<Notification<TestEntity>> unindexedObserver = dispatcher.observe(TestEntity.$.number.greaterThan(5)).test();
+
+        TestEntity entity3 = entity("a", 3);
+        TestEntity entity4 = entity("a", 4);
+        TestEntity entity6 = entity("a", 6);
+
+        upstream.onNext(Notification.ofCreated(entity3, 1L));
+        upstream.onNext(Notification.ofModified(entity3, entity4, 2L));
+        upstream.onNext(Notification.ofModified(entity4, entity3, 3L));
+        upstream.onNext(Notification.ofModified(entity3, entity6, 4L));
+        upstream.onNext(Notification.ofModified(entity6, entity6.toBuilder().text("Modified").build(), 5L));
+
+        indexedObserver.assertNoErrors()
+                .assertValueCount(4)
+                .assertValueAt(0, n -> n.isCreate() && n.newValue().number() == 3)
+                .assertValueAt(1, n -> n.isDelete() && n.oldValue().number() == 3)
+                .assertValueAt(2, n -> n.isCreate() && n.newValue().number() == 3)
+                .assertValueAt(3, n -> n.isDelete() && n.oldValue().number() == 3);
+
+        unindexedObserver.assertNoErrors()
+                .assertValueCount(2)
+                .assertValueAt(0, n -> n.isCreate() && n.newValue().number() == 6)
+                .assertValueAt(1, n -> n.isModify() && "Modified".equals(n.newValue().text()));
+    }
+
+    @Test
+    public void testLastUnsubscribeDisposesUpstream() {
+        TestObserver<Notification<TestEntity>> first = dispatcher.observe(TestEntity.$.number.eq(3)).test();
+        TestObserver<Notification<TestEntity>> second = dispatcher.observe(null).test();
+        Assert.assertEquals(1, subscribeCount.get());
+
+        first.dispose();
+        Assert.assertEquals(0, disposeCount.get());
+        Assert.assertTrue(upstream.hasObservers());
+
+        second.dispose();
+        Assert.assertEquals(1, disposeCount.get());
+        Assert.assertFalse(upstream.hasObservers());
+
+        TestObserver<Notification<TestEntity>> third = dispatcher.observe(TestEntity.$.number.eq(3)).test();
+        Assert.assertEquals(2, subscribeCount.get());
+
+        Notification<TestEntity> created = Notification.ofCreated(entity("a", 3), 1L);
+        upstream.onNext(created);
+        third.assertNoErrors().assertValues(created);
+        first.assertNoValues();
+        second.assertNoValues();
+    }
+
+    @Test
+    public void testUpstreamCompletionCompletesSubscribers() {
+        TestObserver<Notification<TestEntity>> indexedObserver = dispatcher.observe(TestEntity.$.number.eq(3)).test();
+        TestObserver<Notification<TestEntity>> unindexedObserver = dispatcher.observe(null).test();
+
+        upstream.onComplete();
+
+        indexedObserver.assertNoErrors().assertComplete();
+        unindexedObserver.assertNoErrors().assertComplete();
+    }
+
+    static TestEntity entity(String key, int number) {
+        return TestEntity.builder()
+                .keyName(key)
+                .number(number)
+                .text("Entity " + number)
+                .refEntity(TestRefEntity.builder().id(1).text("Ref 1").build())
+                .refEntities(Collections.emptyList())
+                .build();
+    }
+}
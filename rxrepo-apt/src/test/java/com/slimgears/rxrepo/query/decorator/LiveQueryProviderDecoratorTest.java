@@ -0,0 +1,164 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.queries.TestEntity;
+import com.slimgears.rxrepo.queries.TestKey;
+import com.slimgears.rxrepo.queries.TestRefEntity;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+public class LiveQueryProviderDecoratorTest {
+    @Mock(answer = Answers.RETURNS_MOCKS) private QueryProvider mockQueryProvider;
+    private final List<Subject<Notification<TestEntity>>> upstreams = new ArrayList<>();
+    private final Subject<Notification<TestRefEntity>> refUpstream = PublishSubject.create();
+    private final List<Subject<Notification<TestEntity>>> queryResults = new ArrayList<>();
+    private final AtomicInteger upstreamQueryCount = new AtomicInteger();
+    private QueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mockQueryProvider.liveQuery(any())).thenAnswer(invocation -> {
+            QueryInfo<?, ?, ?> query = invocation.getArgument(0);
+            if (query.metaClass() == TestRefEntity.metaClass) {
+                return refUpstream;
+            }
+            if (query.metaClass() != TestEntity.metaClass) {
+                return Observable.never();
+            }
+            upstreamQueryCount.incrementAndGet();
+            return Observable.defer(() -> {
+                Subject<Notification<TestEntity>> upstream = PublishSubject.create();
+                upstreams.add(upstream);
+                return upstream;
+            });
+        });
+        when(mockQueryProvider.query(any())).thenAnswer(invocation -> {
+            Subject<Notification<TestEntity>> result = PublishSubject.create();
+            queryResults.add(result);
+            return result;
+        });
+        queryProvider = LiveQueryProviderDecorator.create(Duration.ofMillis(100)).apply(mockQueryProvider);
+    }
+
+    @Test
+    public void testDispatcherIsSharedWhileSubscribed() {
+        TestObserver<Notification<TestEntity>> first = liveQuery().test();
+        TestObserver<Notification<TestEntity>> second = liveQuery().test();
+        Assert.assertEquals(1, upstreamQueryCount.get());
+        Assert.assertEquals(1, upstreams.size());
+
+        Notification<TestEntity> created = Notification.ofCreated(LiveQueryDispatcherTest.entity("a", 1), 1L);
+        upstreams.get(0).onNext(created);
+        first.assertValues(created);
+        second.assertValues(created);
+    }
+
+    @Test
+    public void testDispatcherIsEvictedWhenUpstreamTerminates() {
+        TestObserver<Notification<TestEntity>> first = liveQuery().test();
+        upstreams.get(0).onComplete();
+        first.assertComplete();
+
+        TestObserver<Notification<TestEntity>> second = liveQuery().test();
+        Assert.assertEquals(2, upstreamQueryCount.get());
+        Assert.assertTrue(upstreams.get(1).hasObservers());
+
+        Notification<TestEntity> created = Notification.ofCreated(LiveQueryDispatcherTest.entity("a", 1), 1L);
+        upstreams.get(1).onNext(created);
+        second.assertNotComplete().assertValues(created);
+    }
+
+    @Test
+    public void testDispatcherIsEvictedWhenLastSubscriberUnsubscribes() {
+        liveQuery().test().dispose();
+        Assert.assertFalse(upstreams.get(0).hasObservers());
+
+        TestObserver<Notification<TestEntity>> second = liveQuery().test();
+        Assert.assertEquals(2, upstreamQueryCount.get());
+
+        Notification<TestEntity> created = Notification.ofCreated(LiveQueryDispatcherTest.entity("a", 1), 1L);
+        upstreams.get(1).onNext(created);
+        second.assertValues(created);
+    }
+
+    @Test
+    public void testReferencedNotificationsAreAppliedToObjectsExistingAtTheirSequenceNumber() {
+        TestRefEntity ref1 = refEntity(1, "Ref 1");
+        TestRefEntity ref1a = refEntity(1, "Ref 1a");
+        TestRefEntity ref1b = refEntity(1, "Ref 1b");
+        TestRefEntity ref2 = refEntity(2, "Ref 2");
+
+        TestObserver<Notification<TestEntity>> observer = queryProvider.liveQuery(QueryInfo.<TestKey, TestEntity, TestEntity>builder()
+                .metaClass(TestEntity.metaClass)
+                .properties(TestEntity.$.refEntity.text)
+                .build())
+                .test();
+
+        TestEntity entityA = LiveQueryDispatcherTest.entity("a", 1);
+        upstreams.get(0).onNext(Notification.ofCreated(entityA, 1L));
+
+        // Back-query of the first notification is in progress, while the following ones are received
+        refUpstream.onNext(Notification.ofModified(ref2, refEntity(2, "Ref 2a"), 2L));
+        Assert.assertEquals(1, queryResults.size());
+
+        TestEntity entityB = LiveQueryDispatcherTest.entity("b", 2).toBuilder().refEntity(ref1a).build();
+        refUpstream.onNext(Notification.ofModified(ref1, ref1a, 3L));
+        upstreams.get(0).onNext(Notification.ofCreated(entityB, 4L));
+        refUpstream.onNext(Notification.ofModified(ref1a, ref1b, 5L));
+        Assert.assertEquals(1, queryResults.size());
+
+        queryResults.get(0).onComplete();
+
+        // Both notifications of ref1 are resolved by a single back-query
+        Assert.assertEquals(2, queryResults.size());
+        queryResults.get(1).onNext(Notification.ofCreated(entityA, 1L));
+        queryResults.get(1).onNext(Notification.ofCreated(entityB, 4L));
+        queryResults.get(1).onComplete();
+
+        observer.assertNoErrors()
+                .assertValueCount(5)
+                .assertValueAt(0, n -> n.isCreate() && n.newValue().key().name().equals("a"))
+                .assertValueAt(1, n -> n.isCreate() && n.newValue().key().name().equals("b"))
+                .assertValueAt(2, n -> n.isModify()
+                        && n.newValue().key().name().equals("a")
+                        && n.oldValue().refEntity().text().equals("Ref 1")
+                        && n.newValue().refEntity().text().equals("Ref 1a"))
+                .assertValueAt(3, n -> n.isModify()
+                        && n.newValue().key().name().equals("a")
+                        && n.newValue().refEntity().text().equals("Ref 1b"))
+                .assertValueAt(4, n -> n.isModify()
+                        && n.newValue().key().name().equals("b")
+                        && n.oldValue().refEntity().text().equals("Ref 1a")
+                        && n.newValue().refEntity().text().equals("Ref 1b")
+                        && n.sequenceNumber() == 5L);
+    }
+
+    private static TestRefEntity refEntity(int id, String text) {
+        return TestRefEntity.builder().id(id).text(text).build();
+    }
+
+    private Observable<Notification<TestEntity>> liveQuery() {
+        return queryProvider.liveQuery(QueryInfo.<TestKey, TestEntity, TestEntity>builder()
+                .metaClass(TestEntity.metaClass)
+                .build());
+    }
+}
@@ -0,0 +1,27 @@
+package com.slimgears.rxrepo.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares index over several properties of the entity, e.g. {@code @CompositeIndex({"tenant", "status"})}.
+ * Property names are verified by annotation processor. Order of properties matters: ordered index can also
+ * serve conditions on any leading subset of the properties.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(CompositeIndex.List.class)
+public @interface CompositeIndex {
+    String[] value();
+    boolean unique() default false;
+    boolean ordered() default false;
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface List {
+        CompositeIndex[] value();
+    }
+}
@@ -10,6 +10,7 @@ import java.lang.annotation.Target;
 
 @AutoValuePrototype(pattern = "(.*)Entity")
 @UseExpressions
+@UseMetaCodec
 @UseCopyAnnotator
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
@@ -10,4 +10,10 @@ import java.lang.annotation.Target;
 public @interface Indexable {
     boolean unique() default false;
     boolean asString() default false;
+
+    /**
+     * Requests ordered (tree-based) index, which, unlike hash index, can also serve range conditions
+     * ({@code greaterThan}, {@code lessThan}, {@code between...}) and sorting by the property
+     */
+    boolean ordered() default false;
 }
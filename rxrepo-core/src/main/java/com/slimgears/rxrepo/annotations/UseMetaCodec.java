@@ -0,0 +1,18 @@
+package com.slimgears.rxrepo.annotations;
+
+import com.slimgears.util.autovalue.annotations.UseMetaDataExtension;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates specialized {@link com.slimgears.rxrepo.encoding.MetaCodec} (nested {@code Codec} class), which is used
+ * instead of reflective {@link com.slimgears.rxrepo.encoding.codecs.MetaClassCodec}
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@UseMetaDataExtension
+public @interface UseMetaCodec {
+}
@@ -1,6 +1,8 @@
 package com.slimgears.rxrepo.encoding;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.slimgears.rxrepo.annotations.Searchable;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
@@ -19,7 +21,20 @@ import java.util.function.Function;
 import java.util.stream.Stream;
 
 public class MetaClassSearchableFields {
+    final static int maxCachedSearchableTexts = 10000;
     private final static Map<Class<?>, Function<Object, String>> searchableTextGetterByClass = new ConcurrentHashMap<>();
+    // Entities are immutable, so searchable text, once computed, is valid for the lifetime of the instance.
+    // Weak keys are compared by identity, so equal instances do not share (and do not retain) entries.
+    // Cache is bounded, so it does not retain searchable text of every live entity (e.g. of in-memory storage).
+    private final static Cache<Object, String> searchableTextByObject = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(maxCachedSearchableTexts)
+            .build();
+
+    static long cachedSearchableTextCount() {
+        searchableTextByObject.cleanUp();
+        return searchableTextByObject.size();
+    }
 
     public static String searchableTextFromObject(Object obj) {
         return Optional.ofNullable(obj)
@@ -32,7 +47,23 @@ public class MetaClassSearchableFields {
     public static <T> Optional<Function<Object, String>> searchableTextFromEntity(MetaClass<T> metaClass) {
         return Optional.ofNullable(searchableTextGetterByClass.computeIfAbsent(
                 metaClass.asClass(),
-                c -> searchableTextFromEntity(metaClass, obj -> metaClass.asClass().cast(obj), new HashSet<>()).orElse(null)));
+                c -> searchableTextFromEntity(metaClass, obj -> metaClass.asClass().cast(obj), new HashSet<>())
+                        .map(MetaClassSearchableFields::cached)
+                        .orElse(null)));
+    }
+
+    private static Function<Object, String> cached(Function<Object, String> searchableText) {
+        return obj -> {
+            if (obj == null) {
+                return searchableText.apply(null);
+            }
+            String text = searchableTextByObject.getIfPresent(obj);
+            if (text == null) {
+                text = searchableText.apply(obj);
+                searchableTextByObject.put(obj, text);
+            }
+            return text;
+        };
     }
 
     private static <T, R> Optional<Function<T, String>> searchableTextFromEntity(MetaClass<R> metaClass, Function<T, R> getter, Set<PropertyMeta<?, ?>> visitedProperties) {
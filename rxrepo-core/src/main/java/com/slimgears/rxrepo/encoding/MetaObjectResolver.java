@@ -2,7 +2,18 @@ package com.slimgears.rxrepo.encoding;
 
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Maybe;
+import io.reactivex.Observable;
+
+import java.util.Collection;
 
 public interface MetaObjectResolver {
     <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key);
+
+    /**
+     * Resolves objects with given keys. Objects, which could not be resolved, are omitted.
+     * Default implementation resolves keys one by one, implementations are expected to override it with single lookup.
+     */
+    default <K, S> Observable<S> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+        return Observable.fromIterable(keys).concatMapMaybe(key -> resolve(metaClass, key));
+    }
 }
@@ -0,0 +1,591 @@
+package com.slimgears.rxrepo.encoding.adapter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaCodecException;
+import com.slimgears.rxrepo.encoding.MetaElementType;
+import com.slimgears.rxrepo.encoding.MetaReader;
+import com.slimgears.rxrepo.encoding.MetaWriter;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.generic.MoreStrings;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary format, read and written directly over {@link ByteBuffer}.
+ * Every element starts with a single tag byte. Integral values are written as zig-zag varints, lengths as varints.
+ * Field names, known to {@link FieldDictionary} shared by writer and reader (e.g. built from {@link MetaClass} property order),
+ * are written as varint ids only. Other names are written once per buffer and are referred by id afterwards.
+ * Writer either grows its own buffer ({@link #writer(FieldDictionary)}), or writes into fixed buffer of the caller
+ * ({@link #writer(ByteBuffer, FieldDictionary)}), failing with {@link MetaCodecException} when it does not fit.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class BinaryAdapter {
+    private final static byte tagBeginObject = 1;
+    private final static byte tagEndObject = 2;
+    private final static byte tagBeginArray = 3;
+    private final static byte tagEndArray = 4;
+    private final static byte tagNameId = 5;
+    private final static byte tagNameDefinition = 6;
+    private final static byte tagInt = 7;
+    private final static byte tagLong = 8;
+    private final static byte tagShort = 9;
+    private final static byte tagFloat = 10;
+    private final static byte tagDouble = 11;
+    private final static byte tagTrue = 12;
+    private final static byte tagFalse = 13;
+    private final static byte tagString = 14;
+    private final static byte tagNull = 15;
+    private final static byte tagBinary = 16;
+
+    private final static int defaultInitialCapacity = 256;
+
+    private final static MetaElementType[] tagToElementType = {
+            MetaElementType.End,
+            MetaElementType.BeginObject,
+            MetaElementType.EndObject,
+            MetaElementType.BeginArray,
+            MetaElementType.EndArray,
+            MetaElementType.Name,
+            MetaElementType.Name,
+            MetaElementType.Integer,
+            MetaElementType.Long,
+            MetaElementType.Short,
+            MetaElementType.Float,
+            MetaElementType.Double,
+            MetaElementType.Boolean,
+            MetaElementType.Boolean,
+            MetaElementType.String,
+            MetaElementType.Null,
+            MetaElementType.Binary
+    };
+
+    /**
+     * Ordered set of field names, which are written as ids. Writer and reader of the same data must use equal dictionaries.
+     */
+    public static class FieldDictionary {
+        private final static FieldDictionary empty = new FieldDictionary(ImmutableList.of());
+        private final ImmutableList<String> names;
+        private final ImmutableMap<String, Integer> ids;
+
+        private FieldDictionary(ImmutableList<String> names) {
+            this.names = names;
+            ImmutableMap.Builder<String, Integer> ids = ImmutableMap.builder();
+            for (int i = 0; i < names.size(); ++i) {
+                ids.put(names.get(i), i);
+            }
+            this.ids = ids.build();
+        }
+
+        public static FieldDictionary empty() {
+            return empty;
+        }
+
+        public static FieldDictionary of(String... names) {
+            return new FieldDictionary(ImmutableList.copyOf(new LinkedHashSet<>(Arrays.asList(names))));
+        }
+
+        /**
+         * Collects property names of given meta classes, and of meta classes they refer to, in property order
+         */
+        public static FieldDictionary of(MetaClass<?>... metaClasses) {
+            Set<String> names = new LinkedHashSet<>();
+            Set<MetaClass<?>> visited = new HashSet<>();
+            Arrays.asList(metaClasses).forEach(metaClass -> collectNames(metaClass, names, visited));
+            return new FieldDictionary(ImmutableList.copyOf(names));
+        }
+
+        private static void collectNames(MetaClass<?> metaClass, Set<String> names, Set<MetaClass<?>> visited) {
+            if (!visited.add(metaClass)) {
+                return;
+            }
+            metaClass.properties().forEach(property -> {
+                names.add(property.name());
+                nestedMetaClass(property.type()).ifPresent(nested -> collectNames(nested, names, visited));
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Optional<MetaClass<?>> nestedMetaClass(TypeToken<?> type) {
+            if (PropertyMetas.hasMetaClass(type)) {
+                return Optional.of(MetaClasses.forTokenUnchecked(type));
+            }
+            if (type.isSubtypeOf(Iterable.class)) {
+                TypeToken<?> elementType = MoreTypeTokens.elementType((TypeToken)type);
+                return PropertyMetas.hasMetaClass(elementType)
+                        ? Optional.of(MetaClasses.forTokenUnchecked(elementType))
+                        : Optional.empty();
+            }
+            return Optional.empty();
+        }
+
+        private int size() {
+            return names.size();
+        }
+    }
+
+    /**
+     * Writer, which buffer grows as needed
+     */
+    public interface Writer extends MetaWriter {
+        /**
+         * @return Written data, positioned for reading
+         */
+        ByteBuffer toByteBuffer();
+    }
+
+    public static Writer writer() {
+        return writer(FieldDictionary.empty());
+    }
+
+    public static Writer writer(FieldDictionary dictionary) {
+        return new BinaryWriter(ByteBuffer.allocate(defaultInitialCapacity), dictionary, true);
+    }
+
+    public static MetaWriter writer(ByteBuffer buffer) {
+        return writer(buffer, FieldDictionary.empty());
+    }
+
+    /**
+     * Writes into given buffer, starting from its position. Writing of element, which does not fit into remaining space
+     * of the buffer, fails with {@link MetaCodecException}
+     */
+    public static MetaWriter writer(ByteBuffer buffer, FieldDictionary dictionary) {
+        return new BinaryWriter(buffer, dictionary, false);
+    }
+
+    public static MetaReader reader(ByteBuffer buffer) {
+        return reader(buffer, FieldDictionary.empty());
+    }
+
+    public static MetaReader reader(ByteBuffer buffer, FieldDictionary dictionary) {
+        return new BinaryReader(buffer, dictionary);
+    }
+
+    private static class BinaryWriter implements Writer {
+        private final FieldDictionary dictionary;
+        private final boolean growable;
+        private final Map<String, Integer> definedNames = new HashMap<>();
+        private ByteBuffer buffer;
+
+        private BinaryWriter(ByteBuffer buffer, FieldDictionary dictionary, boolean growable) {
+            this.buffer = buffer;
+            this.dictionary = dictionary;
+            this.growable = growable;
+        }
+
+        @Override
+        public ByteBuffer toByteBuffer() {
+            ByteBuffer result = buffer.duplicate();
+            result.flip();
+            return result;
+        }
+
+        @Override
+        public MetaWriter writeBeginObject() {
+            return writeTag(tagBeginObject);
+        }
+
+        @Override
+        public MetaWriter writeEndObject() {
+            return writeTag(tagEndObject);
+        }
+
+        @Override
+        public MetaWriter writeBeginArray() {
+            return writeTag(tagBeginArray);
+        }
+
+        @Override
+        public MetaWriter writeEndArray() {
+            return writeTag(tagEndArray);
+        }
+
+        @Override
+        public MetaWriter writeName(String name) {
+            Integer id = dictionary.ids.get(name);
+            if (id == null) {
+                id = definedNames.get(name);
+            }
+            if (id != null) {
+                writeTag(tagNameId);
+                writeVarInt(id);
+                return this;
+            }
+            definedNames.put(name, dictionary.size() + definedNames.size());
+            writeTag(tagNameDefinition);
+            writeUtf8(name);
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeLong(long value) {
+            writeTag(tagLong);
+            writeVarLong(zigZag(value));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeInt(int value) {
+            writeTag(tagInt);
+            writeVarLong(zigZag(value));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeShort(short value) {
+            writeTag(tagShort);
+            writeVarLong(zigZag(value));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeFloat(float value) {
+            writeTag(tagFloat);
+            ensureRemaining(Float.BYTES);
+            buffer.putFloat(value);
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeDouble(double value) {
+            writeTag(tagDouble);
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeBoolean(boolean value) {
+            return writeTag(value ? tagTrue : tagFalse);
+        }
+
+        @Override
+        public MetaWriter writeString(String value) {
+            writeTag(tagString);
+            writeUtf8(value);
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeNull() {
+            return writeTag(tagNull);
+        }
+
+        @Override
+        public MetaWriter writeBytes(byte[] bytes) {
+            writeTag(tagBinary);
+            writeVarInt(bytes.length);
+            ensureRemaining(bytes.length);
+            buffer.put(bytes);
+            return this;
+        }
+
+        private MetaWriter writeTag(byte tag) {
+            ensureRemaining(1);
+            buffer.put(tag);
+            return this;
+        }
+
+        private void ensureRemaining(int size) {
+            if (buffer.remaining() >= size) {
+                return;
+            }
+            if (!growable) {
+                throw new MetaCodecException(MoreStrings.format(
+                        "Buffer overflow: {} bytes required, {} bytes remaining (capacity: {})",
+                        size, buffer.remaining(), buffer.capacity()));
+            }
+            ByteBuffer grownBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            grownBuffer.put(buffer);
+            buffer = grownBuffer;
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xffffffffL);
+        }
+
+        private void writeVarLong(long value) {
+            ensureRemaining(varLongLength(value));
+            while ((value & ~0x7fL) != 0) {
+                buffer.put((byte)((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte)value);
+        }
+
+        private void writeUtf8(String value) {
+            int length = utf8Length(value);
+            writeVarInt(length);
+            ensureRemaining(length);
+            for (int i = 0; i < value.length(); ++i) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer.put((byte)c);
+                } else if (c < 0x800) {
+                    buffer.put((byte)(0xc0 | (c >> 6)));
+                    buffer.put((byte)(0x80 | (c & 0x3f)));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer.put((byte)(0xf0 | (codePoint >> 18)));
+                    buffer.put((byte)(0x80 | ((codePoint >> 12) & 0x3f)));
+                    buffer.put((byte)(0x80 | ((codePoint >> 6) & 0x3f)));
+                    buffer.put((byte)(0x80 | (codePoint & 0x3f)));
+                } else {
+                    buffer.put((byte)(0xe0 | (c >> 12)));
+                    buffer.put((byte)(0x80 | ((c >> 6) & 0x3f)));
+                    buffer.put((byte)(0x80 | (c & 0x3f)));
+                }
+            }
+        }
+
+        private static int varLongLength(long value) {
+            int length = 1;
+            while ((value & ~0x7fL) != 0) {
+                ++length;
+                value >>>= 7;
+            }
+            return length;
+        }
+
+        private static int utf8Length(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); ++i) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    ++i;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static class BinaryReader implements MetaReader {
+        private final ByteBuffer buffer;
+        private final FieldDictionary dictionary;
+        private final List<String> definedNames = new ArrayList<>();
+
+        private BinaryReader(ByteBuffer buffer, FieldDictionary dictionary) {
+            this.buffer = buffer;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public MetaElementType currentElement() {
+            if (!buffer.hasRemaining()) {
+                return MetaElementType.End;
+            }
+            byte tag = buffer.get(buffer.position());
+            if (tag <= 0 || tag >= tagToElementType.length) {
+                throw new MetaCodecException("Unrecognized tag: " + tag);
+            }
+            return tagToElementType[tag];
+        }
+
+        @Override
+        public void readBeginObject() {
+            readTag(MetaElementType.BeginObject);
+        }
+
+        @Override
+        public void readEndObject() {
+            readTag(MetaElementType.EndObject);
+        }
+
+        @Override
+        public void readBeginArray() {
+            readTag(MetaElementType.BeginArray);
+        }
+
+        @Override
+        public void readEndArray() {
+            readTag(MetaElementType.EndArray);
+        }
+
+        @Override
+        public String readName() {
+            if (readTag(MetaElementType.Name) == tagNameDefinition) {
+                String name = readUtf8();
+                definedNames.add(name);
+                return name;
+            }
+            int id = readVarInt();
+            return id < dictionary.size()
+                    ? dictionary.names.get(id)
+                    : definedNames.get(id - dictionary.size());
+        }
+
+        @Override
+        public long readLong() {
+            return readIntegral();
+        }
+
+        @Override
+        public int readInt() {
+            return (int)readIntegral();
+        }
+
+        @Override
+        public short readShort() {
+            return (short)readIntegral();
+        }
+
+        @Override
+        public float readFloat() {
+            return (float)readDouble();
+        }
+
+        @Override
+        public double readDouble() {
+            switch (currentElement()) {
+                case Float:
+                    buffer.get();
+                    return buffer.getFloat();
+                case Double:
+                    buffer.get();
+                    return buffer.getDouble();
+                default:
+                    return readIntegral();
+            }
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return readTag(MetaElementType.Boolean) == tagTrue;
+        }
+
+        @Override
+        public String readString() {
+            readTag(MetaElementType.String);
+            return readUtf8();
+        }
+
+        @Override
+        public void readNull() {
+            readTag(MetaElementType.Null);
+        }
+
+        @Override
+        public byte[] readBytes() {
+            readTag(MetaElementType.Binary);
+            byte[] bytes = new byte[readVarInt()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void skipValue() {
+            int depth = 0;
+            do {
+                switch (currentElement()) {
+                    case BeginObject:
+                    case BeginArray:
+                        buffer.get();
+                        ++depth;
+                        break;
+                    case EndObject:
+                    case EndArray:
+                        buffer.get();
+                        --depth;
+                        break;
+                    case Name:
+                        readName();
+                        break;
+                    case Binary:
+                        buffer.get();
+                        buffer.position(buffer.position() + readVarInt());
+                        break;
+                    case String:
+                        buffer.get();
+                        buffer.position(buffer.position() + readVarInt());
+                        break;
+                    case Float:
+                        buffer.get();
+                        buffer.getFloat();
+                        break;
+                    case Double:
+                        buffer.get();
+                        buffer.getDouble();
+                        break;
+                    case Integer:
+                    case Long:
+                    case Short:
+                        buffer.get();
+                        readVarLong();
+                        break;
+                    case End:
+                        throw new MetaCodecException("Cannot skip value after end");
+                    default:
+                        buffer.get();
+                        break;
+                }
+            } while (depth > 0);
+        }
+
+        private byte readTag(MetaElementType expectedType) {
+            MetaElementType actualType = currentElement();
+            if (actualType != expectedType) {
+                throw new IllegalStateException(MoreStrings.format("Actual element type ({}) does not match to expected ({})", actualType, expectedType));
+            }
+            return buffer.get();
+        }
+
+        private long readIntegral() {
+            MetaElementType type = currentElement();
+            if (type != MetaElementType.Integer && type != MetaElementType.Long && type != MetaElementType.Short) {
+                throw new IllegalStateException(MoreStrings.format("Actual element type ({}) is not integral", type));
+            }
+            buffer.get();
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readVarInt() {
+            return (int)readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                value |= (long)(b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new MetaCodecException("Malformed varint");
+        }
+
+        private String readUtf8() {
+            int length = readVarInt();
+            String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.slimgears.rxrepo.encoding.codecs;
+
+import com.google.common.collect.ImmutableMap;
+import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Field names of the properties of {@link MetaClass}, precomputed for specific {@link MetaClassFieldMapper}.
+ * Names, which were not produced by the mapper for any property, are still resolved through the mapper.
+ */
+class FieldNameTable<T> {
+    private final MetaClass<T> metaClass;
+    private final MetaClassFieldMapper fieldMapper;
+    private final Map<PropertyMeta<T, ?>, String> fieldNames = new IdentityHashMap<>();
+    private final Map<PropertyMeta<T, ?>, String> referenceFieldNames = new IdentityHashMap<>();
+    private final ImmutableMap<String, PropertyMeta<T, ?>> propertiesByFieldName;
+    private final ImmutableMap<String, PropertyMeta<T, ?>> propertiesByReferenceFieldName;
+
+    private FieldNameTable(MetaClass<T> metaClass, MetaClassFieldMapper fieldMapper) {
+        this.metaClass = metaClass;
+        this.fieldMapper = fieldMapper;
+        Map<String, PropertyMeta<T, ?>> propertiesByFieldName = new HashMap<>();
+        Map<String, PropertyMeta<T, ?>> propertiesByReferenceFieldName = new HashMap<>();
+        metaClass.properties().forEach(property -> {
+            String fieldName = fieldMapper.toFieldName(property);
+            String referenceFieldName = fieldMapper.toReferenceFieldName(property);
+            fieldNames.put(property, fieldName);
+            referenceFieldNames.put(property, referenceFieldName);
+            propertiesByFieldName.putIfAbsent(fieldName, property);
+            propertiesByReferenceFieldName.putIfAbsent(referenceFieldName, property);
+        });
+        this.propertiesByFieldName = ImmutableMap.copyOf(propertiesByFieldName);
+        this.propertiesByReferenceFieldName = ImmutableMap.copyOf(propertiesByReferenceFieldName);
+    }
+
+    static <T> FieldNameTable<T> create(MetaClass<T> metaClass, MetaClassFieldMapper fieldMapper) {
+        return new FieldNameTable<>(metaClass, fieldMapper);
+    }
+
+    /**
+     * Returns given table, if it was created for the same field mapper, otherwise creates new one
+     */
+    static <T> FieldNameTable<T> forMapper(FieldNameTable<T> table, MetaClass<T> metaClass, MetaClassFieldMapper fieldMapper) {
+        return (table != null && table.fieldMapper == fieldMapper)
+                ? table
+                : create(metaClass, fieldMapper);
+    }
+
+    MetaClassFieldMapper fieldMapper() {
+        return fieldMapper;
+    }
+
+    String toFieldName(PropertyMeta<T, ?> property) {
+        return fieldNames.get(property);
+    }
+
+    String toReferenceFieldName(PropertyMeta<T, ?> property) {
+        return referenceFieldNames.get(property);
+    }
+
+    PropertyMeta<T, ?> fromFieldName(String name) {
+        PropertyMeta<T, ?> property = propertiesByFieldName.get(name);
+        return property != null ? property : fieldMapper.fromFieldName(metaClass, name);
+    }
+
+    PropertyMeta<T, ?> fromReferenceFieldName(String name) {
+        PropertyMeta<T, ?> property = propertiesByReferenceFieldName.get(name);
+        return property != null ? property : fieldMapper.fromReferenceFieldName(metaClass, name);
+    }
+}
@@ -0,0 +1,193 @@
+package com.slimgears.rxrepo.encoding.codecs;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.*;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Lazy;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Base class for codecs, generated for classes annotated with {@link com.slimgears.rxrepo.annotations.UseMetaCodec}.
+ * Produces the same encoding as {@link MetaClassCodec}, while the generated part reads properties through direct getter calls,
+ * resolves field names by {@code switch} and sets properties through builder setters. Codecs of the properties are resolved
+ * once per {@link MetaCodecProvider} (see {@link ResolvedCodec}), and field names once per {@link MetaClassFieldMapper}
+ * (see {@link FieldNameTable}), instead of per property of every object.
+ *
+ * @param <T> Encoded class
+ * @param <B> Builder of encoded class
+ */
+@SuppressWarnings({"unchecked", "UnstableApiUsage"})
+public abstract class GeneratedMetaClassCodec<T, B> implements MetaCodec<T> {
+    private final MetaClass<T> metaClass;
+    private final PropertyMeta<T, ?>[] properties;
+    private final Lazy<Optional<Function<Object, String>>> textSupplier;
+    private final MetaObjectResolver resolver;
+    private final boolean alwaysEmbedNested;
+    private final ResolvedCodec<Object>[] propertyCodecs;
+    private final ResolvedCodec<Object>[] referenceKeyCodecs;
+    private final MetaClassWithKey<Object, Object>[] referenceMetaClasses;
+    private volatile Bindings bindings;
+
+    /**
+     * Field names of the properties, resolved for specific field mapper
+     */
+    protected static final class Bindings {
+        private final FieldNameTable<Object> fieldNameTable;
+        private final boolean plainFieldNames;
+        private final String keyFieldName;
+        private final int keyIndex;
+
+        private Bindings(GeneratedMetaClassCodec<?, ?> codec, MetaClassFieldMapper fieldMapper) {
+            this.fieldNameTable = FieldNameTable.create((MetaClass<Object>)codec.metaClass, fieldMapper);
+            boolean plainFieldNames = true;
+            String keyFieldName = null;
+            int keyIndex = -1;
+            for (int i = 0; i < codec.properties.length; ++i) {
+                PropertyMeta<Object, ?> property = (PropertyMeta<Object, ?>)codec.properties[i];
+                String fieldName = fieldNameTable.toFieldName(property);
+                if (PropertyMetas.isKey(property)) {
+                    keyFieldName = fieldName;
+                    keyIndex = i;
+                } else {
+                    plainFieldNames &= fieldName.equals(property.name());
+                }
+            }
+            this.plainFieldNames = plainFieldNames;
+            this.keyFieldName = keyFieldName;
+            this.keyIndex = keyIndex;
+        }
+    }
+
+    @SafeVarargs
+    protected GeneratedMetaClassCodec(MetaClass<T> metaClass, MetaObjectResolver resolver, PropertyMeta<T, ?>... properties) {
+        this.metaClass = metaClass;
+        this.properties = properties;
+        this.resolver = Optional.ofNullable(resolver).orElseGet(MetaClassCodec::currentResolver);
+        this.alwaysEmbedNested = resolver == null;
+        this.textSupplier = Lazy.of(() -> MetaClassSearchableFields.searchableTextFromEntity(metaClass));
+        this.propertyCodecs = new ResolvedCodec[properties.length];
+        this.referenceKeyCodecs = new ResolvedCodec[properties.length];
+        this.referenceMetaClasses = new MetaClassWithKey[properties.length];
+        for (int i = 0; i < properties.length; ++i) {
+            PropertyMeta<T, ?> property = properties[i];
+            propertyCodecs[i] = ResolvedCodec.of((TypeToken<Object>)property.type());
+            if (PropertyMetas.isReference(property)) {
+                referenceMetaClasses[i] = MetaClasses.forTokenWithKeyUnchecked((TypeToken<Object>)property.type());
+                referenceKeyCodecs[i] = ResolvedCodec.of(referenceMetaClasses[i].keyProperty().type());
+            }
+        }
+    }
+
+    /**
+     * Writes every property by {@link #writeProperty(MetaContext.Writer, Bindings, int, Object)}
+     */
+    protected abstract void encodeProperties(MetaContext.Writer context, Bindings bindings, T value);
+
+    /**
+     * @return Index of property with given name, or -1 if there is no such property
+     */
+    protected abstract int propertyIndex(String name);
+
+    protected abstract B createBuilder();
+
+    protected abstract void setProperty(B builder, int index, Object value);
+
+    protected abstract T build(B builder);
+
+    @Override
+    public void encode(MetaContext.Writer context, T value) {
+        context.writer().writeBeginObject();
+        encodeProperties(context, bindings(context), value);
+        textSupplier.get()
+                .ifPresent(func -> {
+                    String text = func.apply(value);
+                    context.writer().writeName(context.fieldMapper().searchableTextField());
+                    context.writer().writeString(text);
+                });
+        context.writer().writeEndObject();
+    }
+
+    @Override
+    public T decode(MetaContext.Reader context) {
+        Bindings bindings = bindings(context);
+        MetaReader reader = context.reader();
+        reader.readBeginObject();
+        B builder = createBuilder();
+        int foundProperties = 0;
+        while (reader.currentElement() != MetaElementType.EndObject) {
+            String name = reader.readName();
+            boolean isReference = context.fieldMapper().isReferenceFieldName(name);
+            int index = isReference
+                    ? indexOf(bindings.fieldNameTable.fromReferenceFieldName(name))
+                    : fieldIndex(bindings, name);
+
+            if (index < 0) {
+                reader.skipValue();
+                continue;
+            }
+
+            if (reader.currentElement() == MetaElementType.Null) {
+                reader.readNull();
+            } else {
+                Object value = isReference
+                        ? readReference(context, index)
+                        : propertyCodecs[index].get(context).decode(context);
+                if (value != null) {
+                    setProperty(builder, index, value);
+                }
+            }
+            ++foundProperties;
+        }
+        reader.readEndObject();
+        return (foundProperties > 0)
+                ? build(builder)
+                : null;
+    }
+
+    protected final void writeProperty(MetaContext.Writer context, Bindings bindings, int index, Object value) {
+        if (value == null) {
+            return;
+        }
+        PropertyMeta<Object, ?> property = (PropertyMeta<Object, ?>)properties[index];
+        if (!alwaysEmbedNested && referenceMetaClasses[index] != null) {
+            context.writer().writeName(bindings.fieldNameTable.toReferenceFieldName(property));
+            referenceKeyCodecs[index].get(context).encode(context, referenceMetaClasses[index].keyOf(value));
+        } else {
+            context.writer().writeName(bindings.fieldNameTable.toFieldName(property));
+            propertyCodecs[index].get(context).encode(context, value);
+        }
+    }
+
+    private Object readReference(MetaContext.Reader context, int index) {
+        MetaClassWithKey<Object, Object> referenceMetaClass = referenceMetaClasses[index];
+        return Optional.ofNullable(referenceKeyCodecs[index].get(context).decode(context))
+                .map(key -> ReferenceBatch.resolve(resolver, referenceMetaClass, key))
+                .orElse(null);
+    }
+
+    private int fieldIndex(Bindings bindings, String name) {
+        if (bindings.plainFieldNames) {
+            return name.equals(bindings.keyFieldName) ? bindings.keyIndex : propertyIndex(name);
+        }
+        return indexOf(bindings.fieldNameTable.fromFieldName(name));
+    }
+
+    private int indexOf(PropertyMeta<?, ?> property) {
+        return property != null ? propertyIndex(property.name()) : -1;
+    }
+
+    private Bindings bindings(MetaContext context) {
+        Bindings bindings = this.bindings;
+        if (bindings == null || bindings.fieldNameTable.fieldMapper() != context.fieldMapper()) {
+            bindings = new Bindings(this, context.fieldMapper());
+            this.bindings = bindings;
+        }
+        return bindings;
+    }
+}
@@ -8,16 +8,16 @@ import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import java.util.Optional;
 
 public class IterableCodec<T> implements MetaCodec<Iterable<T>> {
-    private final TypeToken<T> elementType;
+    private final ResolvedCodec<T> elementCodec;
 
     private IterableCodec(TypeToken<T> elementType) {
-        this.elementType = elementType;
+        this.elementCodec = ResolvedCodec.of(elementType);
     }
 
     @Override
     public void encode(MetaContext.Writer context, Iterable<T> iterable) {
         MetaWriter writer = context.writer();
-        MetaCodec<T> elementCodec = context.codecProvider().resolve(elementType);
+        MetaCodec<T> elementCodec = this.elementCodec.get(context);
         writer.writeBeginArray();
         iterable.forEach(val -> elementCodec.encode(context, val));
         writer.writeEndArray();
@@ -26,7 +26,7 @@ public class IterableCodec<T> implements MetaCodec<Iterable<T>> {
     @Override
     public Iterable<T> decode(MetaContext.Reader context) {
         MetaReader reader = context.reader();
-        MetaCodec<T> elementCodec = context.codecProvider().resolve(elementType);
+        MetaCodec<T> elementCodec = this.elementCodec.get(context);
         ImmutableList.Builder<T> builder = ImmutableList.builder();
         reader.readBeginArray();
         while (!reader.isAt(MetaElementType.EndArray)) {
@@ -10,17 +10,19 @@ import java.util.Map;
 
 public class MapCodec<K, V> implements MetaCodec<Map<K, V>> {
     private final TypeToken<K> keyType;
-    private final TypeToken<V> valueType;
+    private final ResolvedCodec<K> keyCodec;
+    private final ResolvedCodec<V> valueCodec;
 
     private MapCodec(TypeToken<K> keyType, TypeToken<V> valueType) {
         this.keyType = keyType;
-        this.valueType = valueType;
+        this.keyCodec = ResolvedCodec.of(keyType);
+        this.valueCodec = ResolvedCodec.of(valueType);
     }
 
     @Override
     public void encode(MetaContext.Writer context, Map<K, V> map) {
         MetaCodec<K> keyCodec = getKeyCodec(context);
-        MetaCodec<V> valueCodec = context.codecProvider().resolve(valueType);
+        MetaCodec<V> valueCodec = this.valueCodec.get(context);
         MetaWriter writer = context.writer();
         writer.writeBeginObject();
         map.forEach((key, value) -> {
@@ -33,7 +35,7 @@ public class MapCodec<K, V> implements MetaCodec<Map<K, V>> {
     @Override
     public Map<K, V> decode(MetaContext.Reader context) {
         MetaCodec<K> keyCodec = getKeyCodec(context);
-        MetaCodec<V> valueCodec = context.codecProvider().resolve(valueType);
+        MetaCodec<V> valueCodec = this.valueCodec.get(context);
         MetaReader reader = context.reader();
         ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
         reader.readBeginObject();
@@ -49,7 +51,7 @@ public class MapCodec<K, V> implements MetaCodec<Map<K, V>> {
     private MetaCodec<K> getKeyCodec(MetaContext context) {
         return keyType.getRawType() == String.class
                 ? keyAsNameCodec()
-                : context.codecProvider().resolve(keyType);
+                : keyCodec.get(context);
     }
 
     private MetaCodec<K> keyAsNameCodec() {
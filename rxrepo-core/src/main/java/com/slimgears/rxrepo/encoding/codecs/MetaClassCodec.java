@@ -7,10 +7,16 @@ import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.generic.ScopedInstance;
 import com.slimgears.util.stream.Lazy;
+import io.reactivex.Single;
 
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 public class MetaClassCodec<T> implements MetaCodec<T> {
@@ -18,29 +24,83 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
     private final Lazy<Optional<Function<Object, String>>> textSupplier;
     private final MetaObjectResolver resolver;
     private final boolean alwaysEmbedNested;
+    private final Map<PropertyMeta<T, ?>, ResolvedCodec<?>> propertyCodecs = new IdentityHashMap<>();
+    private final Map<PropertyMeta<T, ?>, ResolvedCodec<?>> referenceKeyCodecs = new IdentityHashMap<>();
+    private final Map<PropertyMeta<T, ?>, MetaClassWithKey<?, ?>> referenceMetaClasses = new IdentityHashMap<>();
+    private volatile FieldNameTable<T> fieldNames;
 
     private static final ScopedInstance<MetaObjectResolver> objectResolver = ScopedInstance.create();
+    private static final Map<Class<?>, Optional<Constructor<?>>> generatedCodecConstructors = new ConcurrentHashMap<>();
 
     public static <T> T withResolver(MetaObjectResolver resolver, Callable<T> action) {
         return objectResolver.withScope(resolver, action);
     }
 
+    /**
+     * Decodes objects with all references of the batch resolved by a single lookup per referenced class
+     * (see {@link MetaObjectResolver#resolveAll(MetaClassWithKey, java.util.Collection)}), instead of lookup per reference.
+     * Decoder is applied to the same source twice, if first decoding encountered references not resolved yet.
+     */
+    public static <D, T> Single<List<T>> decodeBatch(MetaObjectResolver resolver, List<D> sources, Function<D, T> decoder) {
+        return ReferenceBatch.decode(resolver, sources, decoder);
+    }
+
+    static MetaObjectResolver currentResolver() {
+        return objectResolver.current();
+    }
+
     private MetaClassCodec(MetaClass<T> metaClass, MetaObjectResolver resolver) {
         this.metaClass = metaClass;
         this.resolver = Optional.ofNullable(resolver).orElseGet(objectResolver::current);
         this.textSupplier = Lazy.of(() -> MetaClassSearchableFields.searchableTextFromEntity(metaClass));
         this.alwaysEmbedNested = resolver == null;
+        metaClass.properties().forEach(property -> {
+            propertyCodecs.put(property, ResolvedCodec.of(property.type()));
+            if (PropertyMetas.isReference(property)) {
+                MetaClassWithKey<?, ?> referenceMetaClass = MetaClasses.forTokenWithKeyUnchecked(property.type());
+                referenceMetaClasses.put(property, referenceMetaClass);
+                referenceKeyCodecs.put(property, ResolvedCodec.of(referenceMetaClass.keyProperty().type()));
+            }
+        });
     }
 
     private static <T> MetaCodec<T> forMetaClass(MetaClass<T> metaClass, MetaObjectResolver resolver) {
-        return new MetaClassCodec<>(metaClass, resolver);
+        return MetaClassCodec.<T>generatedCodec(metaClass, resolver)
+                .orElseGet(() -> new MetaClassCodec<>(metaClass, resolver));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Optional<MetaCodec<T>> generatedCodec(MetaClass<T> metaClass, MetaObjectResolver resolver) {
+        return generatedCodecConstructors
+                .computeIfAbsent(metaClass.asClass(), MetaClassCodec::findGeneratedCodecConstructor)
+                .map(constructor -> {
+                    try {
+                        return (MetaCodec<T>)constructor.newInstance(resolver);
+                    } catch (ReflectiveOperationException e) {
+                        throw new MetaCodecException("Could not create generated codec for " + metaClass.simpleName() + ": " + e);
+                    }
+                });
+    }
+
+    private static Optional<Constructor<?>> findGeneratedCodecConstructor(Class<?> cls) {
+        return Arrays.stream(cls.getDeclaredClasses())
+                .filter(GeneratedMetaClassCodec.class::isAssignableFrom)
+                .findFirst()
+                .flatMap(codecClass -> {
+                    try {
+                        return Optional.<Constructor<?>>of(codecClass.getConstructor(MetaObjectResolver.class));
+                    } catch (NoSuchMethodException e) {
+                        return Optional.empty();
+                    }
+                });
     }
 
     @Override
     public void encode(MetaContext.Writer context, T value) {
         context.writer().writeBeginObject();
+        FieldNameTable<T> fieldNames = fieldNames(context);
         metaClass.properties()
-                .forEach(p -> writeProperty(context, p, value));
+                .forEach(p -> writeProperty(context, fieldNames, p, value));
         textSupplier.get()
                 .ifPresent(func -> {
                     String text = func.apply(value);
@@ -52,28 +112,24 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
 
     @Override
     public T decode(MetaContext.Reader context) {
+        FieldNameTable<T> fieldNames = fieldNames(context);
         context.reader().readBeginObject();
         MetaBuilder<T> builder = metaClass.createBuilder();
         int foundProperties = 0;
         while (context.reader().currentElement() != MetaElementType.EndObject) {
             String name = context.reader().readName();
-            Function<String, PropertyMeta<T, ?>> propertyGetter;
-            Consumer<PropertyMeta<T, ?>> propertyReader;
+            boolean isReference = context.fieldMapper().isReferenceFieldName(name);
+            PropertyMeta<T, ?> prop = isReference
+                    ? fieldNames.fromReferenceFieldName(name)
+                    : fieldNames.fromFieldName(name);
 
-            if (context.fieldMapper().isReferenceFieldName(name)) {
-                propertyGetter = n -> context.fieldMapper().fromReferenceFieldName(metaClass, n);
-                propertyReader = prop -> readReferenceProperty(context, prop, builder);
-            } else {
-                propertyGetter = n -> context.fieldMapper().fromFieldName(metaClass, n);
-                propertyReader = prop -> readProperty(context, prop, builder);
-            }
-
-            PropertyMeta<T, ?> prop = propertyGetter.apply(name);
             if (prop != null) {
                 if (context.reader().currentElement() == MetaElementType.Null) {
                     context.reader().readNull();
+                } else if (isReference) {
+                    readReferenceProperty(context, prop, builder);
                 } else {
-                    propertyReader.accept(prop);
+                    readProperty(context, prop, builder);
                 }
                 ++foundProperties;
             } else {
@@ -86,50 +142,55 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
                 : null;
     }
 
-    private <V> void writeProperty(MetaContext.Writer context, PropertyMeta<T, V> propertyMeta, T object) {
+    private FieldNameTable<T> fieldNames(MetaContext context) {
+        FieldNameTable<T> fieldNames = FieldNameTable.forMapper(this.fieldNames, metaClass, context.fieldMapper());
+        this.fieldNames = fieldNames;
+        return fieldNames;
+    }
+
+    private <V> void writeProperty(MetaContext.Writer context, FieldNameTable<T> fieldNames, PropertyMeta<T, V> propertyMeta, T object) {
         V val = propertyMeta.getValue(object);
         if (val != null) {
-            if (!alwaysEmbedNested && PropertyMetas.isReference(propertyMeta)) {
-                context.writer().writeName(context.fieldMapper().toReferenceFieldName(propertyMeta));
-                MetaClassWithKey<?, V> metaClass = MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type());
-                writeReference(context, metaClass, val);
+            MetaClassWithKey<?, V> referenceMetaClass = referenceMetaClass(propertyMeta);
+            if (!alwaysEmbedNested && referenceMetaClass != null) {
+                context.writer().writeName(fieldNames.toReferenceFieldName(propertyMeta));
+                writeReference(context, propertyMeta, referenceMetaClass, val);
             } else {
-                context.writer().writeName(context.fieldMapper().toFieldName(propertyMeta));
-                writeValue(context, propertyMeta.type(), val);
+                context.writer().writeName(fieldNames.toFieldName(propertyMeta));
+                propertyCodec(propertyMeta).get(context).encode(context, val);
             }
         }
     }
 
-    private <K, V> void writeReference(MetaContext.Writer context, MetaClassWithKey<K, V> metaClassWithKey, V value) {
-        writeValue(context, metaClassWithKey.keyProperty().type(), metaClassWithKey.keyOf(value));
+    private <K, V> void writeReference(MetaContext.Writer context, PropertyMeta<T, V> propertyMeta, MetaClassWithKey<K, V> metaClassWithKey, V value) {
+        this.<K>referenceKeyCodec(propertyMeta).get(context).encode(context, metaClassWithKey.keyOf(value));
     }
 
-    private <V> void writeValue(MetaContext.Writer context, TypeToken<V> valueType, V value) {
-        MetaCodec<V> codec = context.codecProvider().resolve(valueType);
-        codec.encode(context, value);
+    private <V> void readProperty(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, MetaBuilder<T> builder) {
+        Optional.ofNullable(propertyCodec(propertyMeta).get(context).decode(context))
+                .ifPresent(val -> propertyMeta.setValue(builder, val));
     }
 
-    private <V> void readProperty(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, MetaBuilder<T> builder) {
-        Optional.ofNullable(readValue(context, propertyMeta.type()))
+    private <K, V> void readReferenceProperty(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, MetaBuilder<T> builder) {
+        MetaClassWithKey<K, V> metaClass = referenceMetaClass(propertyMeta);
+        Optional.ofNullable(this.<K>referenceKeyCodec(propertyMeta).get(context).decode(context))
+                .map(key -> ReferenceBatch.resolve(resolver, metaClass, key))
                 .ifPresent(val -> propertyMeta.setValue(builder, val));
     }
 
-    private <V> V readValue(MetaContext.Reader context, TypeToken<V> type) {
-        MetaCodec<V> codec = context.codecProvider().resolve(type);
-        return codec.decode(context);
+    @SuppressWarnings("unchecked")
+    private <V> ResolvedCodec<V> propertyCodec(PropertyMeta<T, V> propertyMeta) {
+        return (ResolvedCodec<V>)propertyCodecs.get(propertyMeta);
     }
 
     @SuppressWarnings("unchecked")
-    private <V> void readReferenceProperty(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, MetaBuilder<T> builder) {
-        MetaClassWithKey<?, V> metaClass = MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type());
-        Optional.ofNullable((V)readReference(context, (MetaClassWithKey)metaClass))
-                .ifPresent(val -> propertyMeta.setValue(builder, val));
+    private <K> ResolvedCodec<K> referenceKeyCodec(PropertyMeta<T, ?> propertyMeta) {
+        return (ResolvedCodec<K>)referenceKeyCodecs.get(propertyMeta);
     }
 
-    private <K, S> S readReference(MetaContext.Reader context, MetaClassWithKey<K, S> metaClass) {
-        return Optional.ofNullable(readValue(context, metaClass.keyProperty().type()))
-                .flatMap(key -> resolver.resolve(metaClass, key).map(Optional::of).blockingGet(Optional.empty()))
-                .orElse(null);
+    @SuppressWarnings("unchecked")
+    private <K, V> MetaClassWithKey<K, V> referenceMetaClass(PropertyMeta<T, V> propertyMeta) {
+        return (MetaClassWithKey<K, V>)referenceMetaClasses.get(propertyMeta);
     }
 
     @AutoService(MetaCodecProvider.class)
@@ -0,0 +1,110 @@
+package com.slimgears.rxrepo.encoding.codecs;
+
+import com.slimgears.rxrepo.encoding.MetaObjectResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.generic.ScopedInstance;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Resolves references of a batch of decoded objects. Objects are first decoded while only collecting
+ * keys of the references, which are not resolved yet. Collected keys are then resolved by a single
+ * {@link MetaObjectResolver#resolveAll(MetaClassWithKey, Collection)} per referenced class, and objects, which
+ * had unresolved references, are decoded again with all referenced objects taken from the identity map of the batch.
+ */
+@SuppressWarnings("unchecked")
+class ReferenceBatch {
+    private static final ScopedInstance<ReferenceBatch> currentBatch = ScopedInstance.create();
+    private final MetaObjectResolver resolver;
+    private final Map<MetaClassWithKey<?, ?>, Map<Object, Optional<Object>>> resolved = new ConcurrentHashMap<>();
+    private final Map<MetaClassWithKey<?, ?>, Set<Object>> pending = new ConcurrentHashMap<>();
+    private volatile boolean isCollecting = true;
+    private long misses;
+
+    private ReferenceBatch(MetaObjectResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    static <D, T> Single<List<T>> decode(MetaObjectResolver resolver, List<D> sources, Function<D, T> decoder) {
+        ReferenceBatch batch = new ReferenceBatch(resolver);
+        List<T> results = new ArrayList<>(Collections.nCopies(sources.size(), null));
+        List<Integer> unresolved = new ArrayList<>();
+        for (int i = 0; i < sources.size(); ++i) {
+            D source = sources.get(i);
+            long misses = batch.misses;
+            try {
+                T result = currentBatch.withScope(batch, () -> decoder.apply(source));
+                if (batch.misses == misses) {
+                    results.set(i, result);
+                } else {
+                    unresolved.add(i);
+                }
+            } catch (RuntimeException e) {
+                // Decoding could fail because of required reference, which is not resolved yet
+                if (batch.misses == misses) {
+                    throw e;
+                }
+                unresolved.add(i);
+            }
+        }
+
+        if (unresolved.isEmpty()) {
+            return Single.just(results);
+        }
+
+        return batch.resolvePending()
+                .andThen(Single.fromCallable(() -> {
+                    unresolved.forEach(i -> results.set(i, currentBatch.withScope(batch, () -> decoder.apply(sources.get(i)))));
+                    return results;
+                }));
+    }
+
+    static <K, S> S resolve(MetaObjectResolver resolver, MetaClassWithKey<K, S> metaClass, K key) {
+        ReferenceBatch batch = currentBatch.current();
+        return batch != null
+                ? batch.resolve(metaClass, key)
+                : resolver.resolve(metaClass, key).map(Optional::of).blockingGet(Optional.empty()).orElse(null);
+    }
+
+    private <K, S> S resolve(MetaClassWithKey<K, S> metaClass, K key) {
+        Map<Object, Optional<Object>> objects = objectsOf(metaClass);
+        Optional<Object> object = objects.get(key);
+        if (object != null) {
+            return (S)object.orElse(null);
+        }
+        if (isCollecting) {
+            ++misses;
+            pending.computeIfAbsent(metaClass, mc -> new LinkedHashSet<>()).add(key);
+            return null;
+        }
+        S resolvedObject = resolver.resolve(metaClass, key).blockingGet();
+        objects.put(key, Optional.ofNullable(resolvedObject));
+        return resolvedObject;
+    }
+
+    private Completable resolvePending() {
+        return Observable.fromIterable(pending.entrySet())
+                .concatMapCompletable(entry -> resolveAll((MetaClassWithKey<Object, Object>)entry.getKey(), entry.getValue()))
+                .doOnComplete(() -> {
+                    pending.clear();
+                    isCollecting = false;
+                });
+    }
+
+    private <K, S> Completable resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+        Map<Object, Optional<Object>> objects = objectsOf(metaClass);
+        keys.forEach(key -> objects.put(key, Optional.empty()));
+        return resolver.resolveAll(metaClass, keys)
+                .doOnNext(object -> objects.put(metaClass.keyOf(object), Optional.of(object)))
+                .ignoreElements();
+    }
+
+    private Map<Object, Optional<Object>> objectsOf(MetaClassWithKey<?, ?> metaClass) {
+        return resolved.computeIfAbsent(metaClass, mc -> new ConcurrentHashMap<>());
+    }
+}
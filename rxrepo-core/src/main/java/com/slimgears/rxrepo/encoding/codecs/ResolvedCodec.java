@@ -0,0 +1,44 @@
+package com.slimgears.rxrepo.encoding.codecs;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaCodec;
+import com.slimgears.rxrepo.encoding.MetaCodecProvider;
+import com.slimgears.rxrepo.encoding.MetaContext;
+
+/**
+ * Codec of the fixed type, resolved once per {@link MetaCodecProvider} (compared by identity), so encoding and decoding
+ * of every value does not go through {@link TypeToken}-keyed lookup of the provider.
+ */
+@SuppressWarnings("UnstableApiUsage")
+class ResolvedCodec<T> {
+    private final TypeToken<T> type;
+    private volatile Entry<T> entry;
+
+    private static class Entry<T> {
+        private final MetaCodecProvider provider;
+        private final MetaCodec<T> codec;
+
+        private Entry(MetaCodecProvider provider, MetaCodec<T> codec) {
+            this.provider = provider;
+            this.codec = codec;
+        }
+    }
+
+    private ResolvedCodec(TypeToken<T> type) {
+        this.type = type;
+    }
+
+    static <T> ResolvedCodec<T> of(TypeToken<T> type) {
+        return new ResolvedCodec<>(type);
+    }
+
+    MetaCodec<T> get(MetaContext context) {
+        MetaCodecProvider provider = context.codecProvider();
+        Entry<T> entry = this.entry;
+        if (entry == null || entry.provider != provider) {
+            entry = new Entry<>(provider, provider.resolve(type));
+            this.entry = entry;
+        }
+        return entry.codec;
+    }
+}
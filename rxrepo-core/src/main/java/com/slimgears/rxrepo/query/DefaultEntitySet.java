@@ -161,6 +161,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
             private final AtomicReference<ObjectExpression<S, Boolean>> predicate = new AtomicReference<>();
             private Long limit;
             private Long skip;
+            private S after;
 
             @Override
             public <V extends Comparable<V>> SelectQueryBuilder<S> orderBy(PropertyExpression<S, ?, V> field, boolean ascending) {
@@ -178,10 +179,10 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                 return new SelectQuery<T>() {
                     private final QueryInfo.Builder<K, S, T> builder = QueryInfo.<K, S, T>builder()
                             .metaClass(metaClass)
-                            .predicate(predicate.get())
+                            .predicate(predicate())
                             .limit(limit)
                             .skip(skip)
-                            .sorting(sortingInfos.build())
+                            .sorting(sorting())
                             .mapping(omitEmptyMapping(expression))
                             .distinct(distinct);
 
@@ -223,7 +224,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                 return new LiveSelectQuery<T>() {
                     private final QueryInfo.Builder<K, S, T> builder = QueryInfo.<K, S, T>builder()
                             .metaClass(metaClass)
-                            .predicate(predicate.get())
+                            .predicate(predicate())
                             .mapping(omitEmptyMapping(expression));
 
                     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
@@ -264,13 +265,13 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                         QueryInfo<K, S, S> retrieveQuery = observeQuery.toBuilder()
                                 .limit(limit)
                                 .skip(skip)
-                                .sortingAddAll(sortingInfos.build())
+                                .sortingAddAll(sorting())
                                 .build();
 
                         QueryInfo<K, S, T> transformQuery = sourceQuery.toBuilder()
                                 .limit(limit)
                                 .skip(skip)
-                                .sortingAddAll(sortingInfos.build())
+                                .sortingAddAll(sorting())
                                 .build();
 
                         return queryProvider.aggregate(observeQuery, Aggregator.count())
@@ -352,6 +353,27 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                 this.skip = skip;
                 return this;
             }
+
+            @Override
+            public SelectQueryBuilder<S> after(S entity) {
+                this.after = entity;
+                return this;
+            }
+
+            private ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting() {
+                return after != null
+                        ? SortingInfos.toUniqueSorting(metaClass, sortingInfos.build())
+                        : sortingInfos.build();
+            }
+
+            private ObjectExpression<S, Boolean> predicate() {
+                if (after == null) {
+                    return predicate.get();
+                }
+                AtomicReference<ObjectExpression<S, Boolean>> seekPredicate = new AtomicReference<>(predicate.get());
+                updatePredicate(seekPredicate, SortingInfos.toSeekPredicate(sorting(), after));
+                return seekPredicate.get();
+            }
         };
     }
 
@@ -422,7 +444,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                         config.retryCount()));
     }
 
-    private static boolean isConcurrencyException(Throwable exception) {
+    static boolean isConcurrencyException(Throwable exception) {
         log.debug("Checking exception: {}", exception.getMessage(), exception);
         return exception instanceof ConcurrentModificationException ||
                 exception instanceof NoSuchElementException ||
@@ -4,9 +4,12 @@ import com.slimgears.rxrepo.query.decorator.MandatoryPropertiesQueryProviderDeco
 import com.slimgears.rxrepo.query.decorator.TakeUntilCloseQueryProviderDecorator;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.rx.Singles;
 import io.reactivex.Completable;
+import io.reactivex.functions.Function;
 import io.reactivex.subjects.CompletableSubject;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -49,6 +52,24 @@ public class DefaultRepository implements Repository {
         return queryProvider.dropAll();
     }
 
+    @Override
+    public Completable transaction(Function<Repository, Completable> body) {
+        RepositoryConfigModel transactionConfig = RepositoryConfig.builder()
+                .retryCount(0)
+                .bufferDebounceTimeoutMillis(config.bufferDebounceTimeoutMillis())
+                .aggregationDebounceTimeMillis(config.aggregationDebounceTimeMillis())
+                .retryInitialDurationMillis(config.retryInitialDurationMillis())
+                .build();
+        return Completable
+                .defer(() -> queryProvider.transaction(tx -> body.apply(new Transaction(tx, transactionConfig))))
+                .toSingleDefault(true)
+                .compose(Singles.backOffDelayRetry(
+                        DefaultEntitySet::isConcurrencyException,
+                        Duration.ofMillis(config.retryInitialDurationMillis()),
+                        config.retryCount()))
+                .ignoreElement();
+    }
+
     private <K, T> EntitySet<K, T> createEntitySet(MetaClassWithKey<K, T> metaClass) {
         return DefaultEntitySet.create(queryProvider, metaClass, config);
     }
@@ -57,4 +78,44 @@ public class DefaultRepository implements Repository {
     public void close() {
         this.queryProvider.close();
     }
+
+    /**
+     * Repository, bound to a transaction. Operations of its entity sets are not retried individually,
+     * as the transaction is retried as a whole. Nested transactions join the enclosing one.
+     */
+    private static class Transaction implements Repository {
+        private final QueryProvider queryProvider;
+        private final RepositoryConfigModel config;
+        private final Map<MetaClassWithKey<?, ?>, EntitySet<?, ?>> entitySetMap = new HashMap<>();
+
+        private Transaction(QueryProvider queryProvider, RepositoryConfigModel config) {
+            this.queryProvider = queryProvider;
+            this.config = config;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K, T> EntitySet<K, T> entities(MetaClassWithKey<K, T> meta) {
+            return (EntitySet<K, T>)entitySetMap.computeIfAbsent(meta, m -> DefaultEntitySet.create(queryProvider, meta, config));
+        }
+
+        @Override
+        public Iterable<EntitySet<?, ?>> allEntitySets() {
+            return entitySetMap.values();
+        }
+
+        @Override
+        public Completable clear() {
+            return Completable.error(new UnsupportedOperationException("Repository cannot be cleared within transaction"));
+        }
+
+        @Override
+        public Completable transaction(Function<Repository, Completable> body) {
+            return Completable.defer(() -> body.apply(this));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package com.slimgears.rxrepo.query;
+
+import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
+
+import javax.annotation.Nullable;
+import java.util.function.Function;
+
+/**
+ * Positional change of an item within an observed list. {@code oldIndex} refers to the position in the
+ * previous list, {@code newIndex} - to the position in the updated list.
+ */
+@PrototypeWithBuilder
+public interface ListChangePrototype<T> {
+    @Nullable Integer oldIndex();
+    @Nullable Integer newIndex();
+    T item();
+
+    default boolean isInsert() {
+        return oldIndex() == null && newIndex() != null;
+    }
+
+    default boolean isRemove() {
+        return oldIndex() != null && newIndex() == null;
+    }
+
+    default boolean isMove() {
+        return oldIndex() != null && newIndex() != null;
+    }
+
+    default <R> ListChange<R> map(Function<T, R> mapper) {
+        return ListChange.create(oldIndex(), newIndex(), mapper.apply(item()));
+    }
+
+    static <T> ListChangePrototype<T> ofInserted(int index, T item) {
+        return ListChange.create(null, index, item);
+    }
+
+    static <T> ListChangePrototype<T> ofRemoved(int index, T item) {
+        return ListChange.create(index, null, item);
+    }
+
+    static <T> ListChangePrototype<T> ofMoved(int oldIndex, int newIndex, T item) {
+        return ListChange.create(oldIndex, newIndex, item);
+    }
+}
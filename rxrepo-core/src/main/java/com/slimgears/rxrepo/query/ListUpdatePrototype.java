@@ -0,0 +1,24 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
+
+import java.util.function.Function;
+
+/**
+ * Full list along with the changes, transforming previously emitted list into it.
+ * Applying removals (changes with {@code oldIndex}, in descending {@code oldIndex} order) followed
+ * by insertions (changes with {@code newIndex}, in ascending {@code newIndex} order) to the previous list
+ * yields the current one. Modified items are reported as moves (possibly to the same index).
+ */
+@PrototypeWithBuilder
+public interface ListUpdatePrototype<T> {
+    ImmutableList<T> list();
+    ImmutableList<ListChange<T>> changes();
+
+    default <R> ListUpdate<R> map(Function<T, R> mapper) {
+        return ListUpdate.create(
+                list().stream().map(mapper).collect(ImmutableList.toImmutableList()),
+                changes().stream().map(change -> change.map(mapper)).collect(ImmutableList.toImmutableList()));
+    }
+}
@@ -54,6 +54,15 @@ public abstract class LiveSelectQuery<T> {
         return observeAs(Notifications.toList(), properties);
     }
 
+    public final Observable<ListUpdate<T>> asListUpdates() {
+        return observeAs(Notifications.toListUpdates());
+    }
+
+    @SafeVarargs
+    public final Observable<ListUpdate<T>> asListUpdates(PropertyExpression<T, ?, ?>... properties) {
+        return observeAs(Notifications.toListUpdates(), properties);
+    }
+
     @SafeVarargs
     public final <R> Observable<R> observeAs(QueryTransformer<T, R> transformer, PropertyExpression<T, ?, ?>... properties) {
         return properties(properties).observeAs(transformer);
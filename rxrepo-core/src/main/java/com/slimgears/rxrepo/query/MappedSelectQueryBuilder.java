@@ -26,6 +26,12 @@ class MappedSelectQueryBuilder<T, S> extends SelectQueryBuilder<T> {
         return this;
     }
 
+    @Override
+    public SelectQueryBuilder<T> after(T entity) {
+        // Anchor of the underlying query cannot be restored from the mapped value
+        throw new UnsupportedOperationException("Seek pagination is not supported for mapped queries, use after() before mapping");
+    }
+
     @Override
     public <V extends Comparable<V>> SelectQueryBuilder<T> orderBy(PropertyExpression<T, ?, V> field, boolean ascending) {
         underlying.orderBy(Expressions.compose(mapper, field), ascending);
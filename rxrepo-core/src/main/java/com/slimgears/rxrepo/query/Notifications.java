@@ -5,6 +5,7 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.generic.MoreStrings;
@@ -56,6 +57,33 @@ public class Notifications {
             .map(objects -> objects.stream().map(mapper).collect(Collectors.toList()));
     }
 
+    public static <K, S, T> ObservableTransformer<List<Notification<S>>, ListUpdate<T>> toListUpdates(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable ObjectExpression<S, T> mapping,
+            @Nullable Long limit) {
+        Function<S, T> mapper = Expressions.compile(mapping);
+        ObservableTransformer<List<Notification<S>>, ListUpdate<S>> transformer = NotificationsToListTransformer.create(metaClass, sortingInfos, limit).withChanges();
+        return src -> src
+            .compose(transformer)
+            .map(update -> update.map(mapper));
+    }
+
+    private static <K, S, T> ObservableTransformer<List<Notification<S>>, ListUpdate<T>> toSlidingListUpdates(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable ObjectExpression<S, T> mapping,
+            @Nullable Long limit) {
+        Function<S, T> mapper = Expressions.compile(mapping);
+        ObservableTransformer<List<Notification<S>>, ListUpdate<S>> transformer =
+                Optional.ofNullable(sortingInfos).map(List::size).map(s -> s > 0).orElse(false)
+                        ? NotificationsToSlidingListTransformer.create(metaClass, sortingInfos, limit).withChanges()
+                        : NotificationsToListTransformer.create(metaClass, sortingInfos, limit).withChanges();
+        return src -> src
+            .compose(transformer)
+            .map(update -> update.map(mapper));
+    }
+
     public static <K, S> ObservableTransformer<List<Notification<S>>, List<S>> toList(QueryInfo<K, S, S> queryInfo, AtomicLong count) {
         return Notifications.toList(queryInfo.metaClass(), queryInfo.sorting(), queryInfo.mapping(), queryInfo.limit());
     }
@@ -82,37 +110,73 @@ public class Notifications {
         };
     }
 
+    /**
+     * Emits the full list along with positional changes (insertions, removals and moves) per buffered batch of notifications.
+     */
+    public static <T> QueryTransformer<T, ListUpdate<T>> toListUpdates() {
+        return new QueryTransformer<T, ListUpdate<T>>() {
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, ListUpdate<T>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                return toListUpdates(query.metaClass(), query.sorting(), query.mapping(), query.limit());
+            }
+        };
+    }
+
+    public static <T> QueryTransformer<T, ListUpdate<T>> toSlidingListUpdates() {
+        return new QueryTransformer<T, ListUpdate<T>>() {
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, ListUpdate<T>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                return toSlidingListUpdates(query.metaClass(), query.sorting(), query.mapping(), query.limit());
+            }
+        };
+    }
+
     public static <S> ObservableTransformer<Notification<S>, Notification<S>> applyFilter(ObjectExpression<S, Boolean> predicate) {
+        return applyFilter(predicate, ExpressionCompiler.standard());
+    }
+
+    public static <S> ObservableTransformer<Notification<S>, Notification<S>> applyFilter(ObjectExpression<S, Boolean> predicate, ExpressionCompiler compiler) {
         if (predicate == null) {
             return src -> src;
         }
 
-        Predicate<S> compiledPredicate = Expressions.compileRxPredicate(predicate);
+        Predicate<S> compiledPredicate = compiler.compileRxPredicate(predicate);
         return src -> src
-                .flatMapMaybe(notification -> {
-                    if (notification.isCreate()) {
-                        if (compiledPredicate.test(notification.newValue())) {
-                            return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
-                        }
-                    } else if (notification.isDelete()) {
-                        if (compiledPredicate.test(notification.oldValue())) {
-                            return Maybe.just(Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber()));
-                        }
-                    } else if (notification.isModify()) {
-                        boolean oldMatch = compiledPredicate.test(notification.oldValue());
-                        boolean newMatch = compiledPredicate.test(notification.newValue());
-                        if (oldMatch && !newMatch) {
-                            return Maybe.just(Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber()));
-                        } else if (!oldMatch && newMatch) {
-                            return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
-                        } else if (oldMatch) {
-                            return Maybe.just(notification);
-                        }
-                    } else {
-                        return Maybe.just(notification);
-                    }
-                    return Maybe.empty();
-                });
+                .flatMapMaybe(notification -> Optional
+                        .ofNullable(filter(compiledPredicate, notification))
+                        .map(Maybe::just)
+                        .orElseGet(Maybe::empty));
+    }
+
+    /**
+     * Converts notification according to whether old and new values satisfy the predicate: modification of
+     * a matching object into non-matching one becomes deletion, and vice versa. Returns null when the
+     * notification is irrelevant for the predicate.
+     */
+    @Nullable
+    public static <S> Notification<S> filter(Predicate<S> predicate, Notification<S> notification) throws Exception {
+        if (notification.isCreate()) {
+            if (predicate.test(notification.newValue())) {
+                return Notification.ofCreated(notification.newValue(), notification.sequenceNumber());
+            }
+        } else if (notification.isDelete()) {
+            if (predicate.test(notification.oldValue())) {
+                return Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber());
+            }
+        } else if (notification.isModify()) {
+            boolean oldMatch = predicate.test(notification.oldValue());
+            boolean newMatch = predicate.test(notification.newValue());
+            if (oldMatch && !newMatch) {
+                return Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber());
+            } else if (!oldMatch && newMatch) {
+                return Notification.ofCreated(notification.newValue(), notification.sequenceNumber());
+            } else if (oldMatch) {
+                return notification;
+            }
+        } else {
+            return notification;
+        }
+        return null;
     }
 
     public static <K, S, T> ObservableTransformer<Notification<S>, Notification<T>> applyQuery(QueryInfo<K, S, T> query) {
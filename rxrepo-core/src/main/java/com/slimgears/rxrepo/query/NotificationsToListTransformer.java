@@ -19,6 +19,7 @@ public class NotificationsToListTransformer<K, T> implements ObservableTransform
     private final Map<K, T> map = new HashMap<>();
     private final Set<T> set;
     private final MetaClassWithKey<K, T> metaClass;
+    private ImmutableList<T> lastList = ImmutableList.of();
 
     private NotificationsToListTransformer(MetaClassWithKey<K, T> metaClass,
                                            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
@@ -47,6 +48,44 @@ public class NotificationsToListTransformer<K, T> implements ObservableTransform
                 .doOnNext(l -> log.trace("List update: {} items", l.size()));
     }
 
+    /**
+     * Same as the transformer itself, but along with the full list emits positional changes against the previously emitted list.
+     */
+    public ObservableTransformer<List<Notification<T>>, ListUpdate<T>> withChanges() {
+        return src -> src
+                .doOnNext(this::updateMap)
+                .map(n -> toListUpdate(toList()));
+    }
+
+    /**
+     * Matches items of previous and current lists by key. Items, which were created, deleted, modified or
+     * broke the relative order of the rest of items are reported as changes. Takes O(n) per emitted list.
+     */
+    private synchronized ListUpdate<T> toListUpdate(ImmutableList<T> list) {
+        Map<K, Integer> lastIndices = new HashMap<>(lastList.size());
+        for (int i = 0; i < lastList.size(); ++i) {
+            lastIndices.put(metaClass.keyOf(lastList.get(i)), i);
+        }
+
+        ImmutableList.Builder<ListChange<T>> changes = ImmutableList.builder();
+        int lastKeptIndex = -1;
+        for (int i = 0; i < list.size(); ++i) {
+            T item = list.get(i);
+            Integer lastIndex = lastIndices.remove(metaClass.keyOf(item));
+            if (lastIndex == null) {
+                changes.add(ListChange.create(null, i, item));
+            } else if (lastIndex < lastKeptIndex || !Objects.equals(lastList.get(lastIndex), item)) {
+                changes.add(ListChange.create(lastIndex, i, item));
+            } else {
+                lastKeptIndex = lastIndex;
+            }
+        }
+        lastIndices.values().forEach(index -> changes.add(ListChange.create(index, null, lastList.get(index))));
+
+        lastList = list;
+        return ListUpdate.create(list, changes.build());
+    }
+
     private ImmutableList<T> toList() {
         return Optional.ofNullable(limit)
                 .map(l -> set.stream().limit(l).collect(ImmutableList.toImmutableList()))
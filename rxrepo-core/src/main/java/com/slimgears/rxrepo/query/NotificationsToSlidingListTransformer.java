@@ -14,19 +14,35 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Maintains sorted window of items, received through notifications. Items are kept in an ordered set
+ * (sorted by query comparator), so every create/modify/delete is applied in O(log n), and positional
+ * changes are resolved by binary search over the previously emitted list.
+ */
 public class NotificationsToSlidingListTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<T>> {
     private final static Logger log = LoggerFactory.getLogger(NotificationsToSlidingListTransformer.class);
     private final @Nullable Long limit;
     private final AtomicLong firstItemIndex;
-    private final AtomicReference<T> firstItem = new AtomicReference<>();
     private final Comparator<T> comparator;
-    private final Map<K, T> map = Collections.synchronizedMap(new HashMap<>());
+    private final Comparator<Entry<T>> entryComparator;
+    private final NavigableSet<Entry<T>> entries;
+    private final Map<K, Entry<T>> map = new HashMap<>();
+    private final Map<K, Entry<T>> touchedEntries = new HashMap<>();
     private final MetaClassWithKey<K, T> metaClass;
+    private List<Entry<T>> lastEntries = Collections.emptyList();
+    private @Nullable T firstItem;
+    private long nextOrder;
 
+    private static class Entry<T> {
+        private final T item;
+        private final long order;
+
+        private Entry(T item, long order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
 
     private NotificationsToSlidingListTransformer(MetaClassWithKey<K, T> metaClass,
                                            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
@@ -39,6 +55,9 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
         this.comparator = Optional
                 .ofNullable(SortingInfos.toComparator(sortingInfos))
                 .orElseThrow(() -> new IllegalArgumentException("Query with sorting is expected"));
+        // Items equal by query comparator are ordered by arrival, so each entry has a distinct position
+        this.entryComparator = Comparator.<Entry<T>, T>comparing(e -> e.item, comparator).thenComparingLong(e -> e.order);
+        this.entries = new TreeSet<>(entryComparator);
     }
 
     public static <K, T> NotificationsToSlidingListTransformer<K, T> create(
@@ -59,61 +78,81 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     @Override
     public @NonNull ObservableSource<List<T>> apply(@NonNull Observable<List<Notification<T>>> src) {
         return src
-                .doOnNext(this::updateMap)
-                .map(n -> toList());
+                .compose(withChanges())
+                .map(ListUpdate::list);
     }
 
-    private ImmutableList<T> toList() {
-        return map.values()
-                .stream()
-                .sorted(comparator)
-                .collect(ImmutableList.toImmutableList());
+    /**
+     * Same as the transformer itself, but along with the full list emits positional changes against the previously emitted list.
+     */
+    public ObservableTransformer<List<Notification<T>>, ListUpdate<T>> withChanges() {
+        return src -> src.map(this::update);
     }
 
-    private void updateMap(List<Notification<T>> notifications) {
-        notifications
-                .stream()
-                .peek(this::updateStartIndex)
-                .forEach(this::onNotification);
+    private synchronized ListUpdate<T> update(List<Notification<T>> notifications) {
+        notifications.forEach(notification -> {
+            updateStartIndex(notification);
+            onNotification(notification);
+        });
 
         removeBeforeFirst();
         removeAfterLast();
         updateFirst();
+
+        List<Entry<T>> currentEntries = new ArrayList<>(entries);
+        ListUpdate<T> listUpdate = ListUpdate.create(
+                currentEntries.stream().map(e -> e.item).collect(ImmutableList.toImmutableList()),
+                toChanges(currentEntries));
+
+        touchedEntries.clear();
+        lastEntries = currentEntries;
+        return listUpdate;
+    }
+
+    private ImmutableList<ListChange<T>> toChanges(List<Entry<T>> currentEntries) {
+        ImmutableList.Builder<ListChange<T>> changes = ImmutableList.builder();
+        touchedEntries.forEach((key, oldEntry) -> {
+            Entry<T> newEntry = map.get(key);
+            if (oldEntry == newEntry) {
+                return;
+            }
+            Integer oldIndex = oldEntry != null ? Collections.binarySearch(lastEntries, oldEntry, entryComparator) : null;
+            Integer newIndex = newEntry != null ? Collections.binarySearch(currentEntries, newEntry, entryComparator) : null;
+            changes.add(toChange(oldIndex, newIndex, newEntry != null ? newEntry.item : oldEntry.item));
+        });
+        return changes.build();
+    }
+
+    private static <T> ListChange<T> toChange(@Nullable Integer oldIndex, @Nullable Integer newIndex, T item) {
+        if (oldIndex == null) {
+            return ListChange.ofInserted(Objects.requireNonNull(newIndex), item);
+        }
+        return newIndex != null
+                ? ListChange.ofMoved(oldIndex, newIndex, item)
+                : ListChange.ofRemoved(oldIndex, item);
     }
 
     private void updateFirst() {
-        map.values()
-                .stream()
-                .min(comparator)
-                .ifPresent(item -> {
-                    log.trace("First item set: {}", item);
-                    firstItem.set(item);
-                });
+        if (!entries.isEmpty()) {
+            firstItem = entries.first().item;
+            log.trace("First item set: {}", firstItem);
+        }
     }
 
     private void removeAfterLast() {
-        Optional.ofNullable(limit)
-                .map(l -> map.values()
-                        .stream()
-                        .sorted(comparator)
-                        .skip(l))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        if (limit == null) {
+            return;
+        }
+        while (entries.size() > limit) {
+            remove(entries.last());
+        }
     }
 
     private void removeBeforeFirst() {
-        log.trace("Trying to remove item before first ({})", firstItem.get());
-        Optional.ofNullable(firstItem.get())
-                .map(m -> map.values()
-                        .stream()
-                        .peek(val -> log.trace("Comparing items: (firstItem: {}, currentItem: {}, result: {})", m, val, comparator.compare(m, val)))
-                        .filter(val -> comparator.compare(m, val) > 0))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        log.trace("Trying to remove item before first ({})", firstItem);
+        while (!entries.isEmpty() && isBeforeFirst(entries.first().item)) {
+            remove(entries.first());
+        }
     }
 
     private void updateStartIndex(Notification<T> notification) {
@@ -131,20 +170,42 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     }
 
     private boolean isBeforeFirst(T item) {
-        return Optional.ofNullable(firstItem.get())
-                .map(fi -> comparator.compare(fi, item) > 0)
-                .orElse(false);
+        return firstItem != null && comparator.compare(firstItem, item) > 0;
     }
 
     private void onNotification(Notification<T> notification) {
         if (notification.isDelete()) {
             Optional.ofNullable(notification.oldValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(map::remove);
+                    .map(metaClass::keyOf)
+                    .map(map::get)
+                    .ifPresent(this::remove);
         } else {
             Optional.ofNullable(notification.newValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(key -> map.put(key, notification.newValue()));
+                    .ifPresent(this::put);
+        }
+    }
+
+    private void put(T item) {
+        K key = metaClass.keyOf(item);
+        Entry<T> entry = new Entry<>(item, nextOrder++);
+        Entry<T> oldEntry = map.put(key, entry);
+        touch(key, oldEntry);
+        if (oldEntry != null) {
+            entries.remove(oldEntry);
+        }
+        entries.add(entry);
+    }
+
+    private void remove(Entry<T> entry) {
+        K key = metaClass.keyOf(entry.item);
+        touch(key, entry);
+        map.remove(key);
+        entries.remove(entry);
+    }
+
+    private void touch(K key, @Nullable Entry<T> entry) {
+        if (!touchedEntries.containsKey(key)) {
+            touchedEntries.put(key, entry);
         }
     }
 }
@@ -3,6 +3,7 @@ package com.slimgears.rxrepo.query;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.functions.Function;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
@@ -15,6 +16,14 @@ public interface Repository extends AutoCloseable {
     void close();
     Completable clear();
 
+    /**
+     * Runs {@code body} against repository, which entity sets are bound to a single transaction, spanning
+     * all of them. The transaction is committed when completable, returned by {@code body}, completes,
+     * and rolled back when it fails. Notifications of the changes are emitted once, on commit.
+     * Transactions failing because of concurrent modification are retried as a whole.
+     */
+    Completable transaction(Function<Repository, Completable> body);
+
     default Repository onClose(Consumer<Repository> onClose) {
         Repository self = this;
         AtomicBoolean closed = new AtomicBoolean();
@@ -35,6 +44,11 @@ public interface Repository extends AutoCloseable {
                 return self.clear();
             }
 
+            @Override
+            public Completable transaction(Function<Repository, Completable> body) {
+                return self.transaction(body);
+            }
+
             @Override
             public void close() {
                 if (closed.compareAndSet(false, true)) {
@@ -13,6 +13,16 @@ public abstract class SelectQueryBuilder<S>
     implements QueryBuilder<SelectQueryBuilder<S>, S> {
     public abstract SelectQueryBuilder<S> skip(long skip);
 
+    /**
+     * Seek (keyset) pagination: selects entities, following the given one in query order. Unlike {@link #skip(long)},
+     * the cost does not grow with the page depth, as the condition is translated into range predicate
+     * over sorting properties, completed by the key (to make the order unique).
+     * Sorting properties must not be nullable (otherwise the query fails with {@link IllegalArgumentException}),
+     * as providers place nulls differently. Anchor is an entity of the queried type, so for mapped queries
+     * it should be set before {@link #map(ObjectExpression)} (mapped builder throws {@link UnsupportedOperationException})
+     */
+    public abstract SelectQueryBuilder<S> after(S entity);
+
     public abstract <V extends Comparable<V>> SelectQueryBuilder<S> orderBy(PropertyExpression<S, ?, V> field, boolean ascending);
 
     public abstract SelectQuery<S> select();
@@ -124,6 +124,14 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
         return getUnderlyingProvider().dropAll();
     }
 
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return getUnderlyingProvider().transaction(tx -> body.apply(decorateTransaction(tx)))
+                .doOnSubscribe(d -> log.trace("Starting transaction"))
+                .doOnError(error -> log.trace("Transaction failed", error))
+                .doOnComplete(() -> log.trace("Transaction committed"));
+    }
+
     @Override
     public void close() {
         getUnderlyingProvider().close();
@@ -132,4 +140,13 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
     protected QueryProvider getUnderlyingProvider() {
         return underlyingProvider;
     }
+
+    /**
+     * Decorates provider, bound to a transaction, before it is passed to the body of the transaction.
+     * By default, operations within transaction bypass the decorator, which applies to the transaction as a whole.
+     * Decorators, which change semantics of the individual operations, should re-apply themselves here.
+     */
+    protected QueryProvider decorateTransaction(QueryProvider transaction) {
+        return transaction;
+    }
 }
@@ -0,0 +1,204 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.GenericMath;
+import io.reactivex.Maybe;
+
+import java.util.Optional;
+
+/**
+ * State of count, sum, average, min or max aggregation, which is initialized from a snapshot (aggregation query),
+ * and then is updated from create/modify/delete notifications, without re-executing the query.
+ * Values of notifications are the aggregated values, i.e. objects after query mapping. Null values are ignored,
+ * except by count, which counts objects.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+abstract class IncrementalAggregation<T, R> {
+    /**
+     * Returns empty, if the aggregator is not supported
+     */
+    static <T, R> Optional<IncrementalAggregation<T, R>> create(Aggregator<T, T, R> aggregator) {
+        Expression.Type type = aggregator.apply((ObjectExpression)ObjectExpression.objectArg(TypeToken.of(java.util.Collection.class))).type();
+        switch (type) {
+            case Count: return Optional.of((IncrementalAggregation<T, R>)new Count<T>());
+            case Sum: return Optional.of(new Sum<>(aggregator));
+            case Average: return Optional.of((IncrementalAggregation<T, R>)new Average<>());
+            case Min: return Optional.of(new Extreme<>(aggregator, 1));
+            case Max: return Optional.of(new Extreme<>(aggregator, -1));
+            default: return Optional.empty();
+        }
+    }
+
+    /**
+     * Re-initializes state by querying the provider, and returns the aggregated value
+     */
+    abstract <K, S> Maybe<R> snapshot(QueryProvider provider, QueryInfo<K, S, T> query);
+
+    /**
+     * Updates state by the notification. Returns {@code false} if state cannot be updated incrementally
+     * (and snapshot should be re-queried)
+     */
+    abstract boolean apply(Notification<T> notification);
+
+    abstract Maybe<R> value();
+
+    private static class Count<T> extends IncrementalAggregation<T, Long> {
+        private long count;
+
+        @Override
+        <K, S> Maybe<Long> snapshot(QueryProvider provider, QueryInfo<K, S, T> query) {
+            return provider.aggregate(query, Aggregator.<T, T>count())
+                    .defaultIfEmpty(0L)
+                    .doOnSuccess(c -> count = c);
+        }
+
+        @Override
+        boolean apply(Notification<T> notification) {
+            if (notification.isCreate()) {
+                ++count;
+            } else if (notification.isDelete()) {
+                --count;
+            }
+            return true;
+        }
+
+        @Override
+        Maybe<Long> value() {
+            return Maybe.just(count);
+        }
+    }
+
+    private static class Sum<T, R> extends IncrementalAggregation<T, R> {
+        private final Aggregator<T, T, R> aggregator;
+        private Number sum;
+
+        private Sum(Aggregator<T, T, R> aggregator) {
+            this.aggregator = aggregator;
+        }
+
+        @Override
+        <K, S> Maybe<R> snapshot(QueryProvider provider, QueryInfo<K, S, T> query) {
+            sum = null;
+            return provider.aggregate(query, aggregator).doOnSuccess(s -> sum = (Number)s);
+        }
+
+        @Override
+        boolean apply(Notification<T> notification) {
+            Number oldValue = (Number)notification.oldValue();
+            Number newValue = (Number)notification.newValue();
+            if (newValue != null) {
+                sum = sum != null ? GenericMath.add(sum, newValue) : newValue;
+            }
+            if (oldValue != null) {
+                if (sum == null) {
+                    return false;
+                }
+                sum = GenericMath.subtract(sum, oldValue);
+            }
+            return true;
+        }
+
+        @Override
+        Maybe<R> value() {
+            return Maybe.fromCallable(() -> (R)sum);
+        }
+    }
+
+    private static class Average<T> extends IncrementalAggregation<T, Double> {
+        private double sum;
+        private long count;
+
+        @Override
+        <K, S> Maybe<Double> snapshot(QueryProvider provider, QueryInfo<K, S, T> query) {
+            // Objects, mapped to null, are not included into average
+            QueryInfo<K, S, T> nonNullQuery = Optional.ofNullable(query.mapping())
+                    .map(mapping -> query.toBuilder()
+                            .predicate(Optional.ofNullable(query.predicate())
+                                    .<ObjectExpression<S, Boolean>>map(p -> BooleanExpression.and(p, mapping.isNotNull()))
+                                    .orElseGet(mapping::isNotNull))
+                            .build())
+                    .orElse(query);
+            return Maybe.zip(
+                    provider.aggregate(nonNullQuery, (Aggregator<T, T, Number>)(Aggregator)Aggregator.<T, Integer>sum()).map(Number::doubleValue).defaultIfEmpty(0.0),
+                    provider.aggregate(nonNullQuery, Aggregator.<T, T>count()).defaultIfEmpty(0L),
+                    (s, c) -> {
+                        sum = s;
+                        count = c;
+                        return true;
+                    })
+                    .flatMap(ignored -> value());
+        }
+
+        @Override
+        boolean apply(Notification<T> notification) {
+            Number oldValue = (Number)notification.oldValue();
+            Number newValue = (Number)notification.newValue();
+            if (newValue != null) {
+                sum += newValue.doubleValue();
+                ++count;
+            }
+            if (oldValue != null) {
+                sum -= oldValue.doubleValue();
+                --count;
+            }
+            return count >= 0;
+        }
+
+        @Override
+        Maybe<Double> value() {
+            return count > 0 ? Maybe.just(sum / count) : Maybe.empty();
+        }
+    }
+
+    /**
+     * Min (sign = 1) or max (sign = -1). Removal (or change) of the current extreme value requires re-query,
+     * as the next extreme value is unknown.
+     */
+    private static class Extreme<T, R> extends IncrementalAggregation<T, R> {
+        private final Aggregator<T, T, R> aggregator;
+        private final int sign;
+        private Comparable extreme;
+
+        private Extreme(Aggregator<T, T, R> aggregator, int sign) {
+            this.aggregator = aggregator;
+            this.sign = sign;
+        }
+
+        @Override
+        <K, S> Maybe<R> snapshot(QueryProvider provider, QueryInfo<K, S, T> query) {
+            extreme = null;
+            return provider.aggregate(query, aggregator).doOnSuccess(e -> extreme = (Comparable)e);
+        }
+
+        @Override
+        boolean apply(Notification<T> notification) {
+            Comparable oldValue = (Comparable)notification.oldValue();
+            Comparable newValue = (Comparable)notification.newValue();
+            if (oldValue != null && extreme != null && compare(oldValue, extreme) <= 0) {
+                if (newValue == null || compare(newValue, oldValue) > 0) {
+                    return false;
+                }
+            }
+            if (newValue != null && (extreme == null || compare(newValue, extreme) < 0)) {
+                extreme = newValue;
+            }
+            return true;
+        }
+
+        @Override
+        Maybe<R> value() {
+            return Maybe.fromCallable(() -> (R)extreme);
+        }
+
+        private int compare(Comparable first, Comparable second) {
+            return sign * first.compareTo(second);
+        }
+    }
+}
@@ -46,6 +46,11 @@ public class InterceptingQueryProviderDecorator implements QueryProvider.Decorat
             return super.queryAndObserve(queryInfo, observeInfo).compose(applyOnLiveQuery(queryInfo));
         }
 
+        @Override
+        protected QueryProvider decorateTransaction(QueryProvider transaction) {
+            return new Decorator(transaction);
+        }
+
         private <K, S, T> ObservableTransformer<Notification<T>, Notification<T>> applyOnQuery(QueryInfo<K, S, T> queryInfo) {
             return source -> {
                 AtomicReference<Observable<Notification<T>>> observable = new AtomicReference<>(source);
@@ -0,0 +1,171 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.functions.Predicate;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Shares single upstream live query between multiple subscribers with different predicates. Subscribers, whose
+ * predicate requires equality of some property to a constant (e.g. {@code tenantId == X}), are indexed by that
+ * value, so a notification is only evaluated against the subscribers it may be relevant for.
+ */
+class LiveQueryDispatcher<S> {
+    private final Observable<Notification<S>> upstream;
+    private final ExpressionCompiler compiler;
+    private final Set<Subscriber<S>> unindexedSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<PropertyExpression<S, ?, ?>, PropertyIndex<S>> indexes = new ConcurrentHashMap<>();
+
+    private static class Subscriber<S> {
+        private final Predicate<S> predicate;
+        private final ObservableEmitter<Notification<S>> emitter;
+
+        private Subscriber(Predicate<S> predicate, ObservableEmitter<Notification<S>> emitter) {
+            this.predicate = predicate;
+            this.emitter = emitter;
+        }
+
+        private void onNotification(Notification<S> notification) {
+            try {
+                Optional.ofNullable(Notifications.filter(predicate, notification)).ifPresent(emitter::onNext);
+            } catch (Exception e) {
+                emitter.tryOnError(e);
+            }
+        }
+    }
+
+    private static class PropertyIndex<S> {
+        private final Function<S, ?> getter;
+        private final Map<Object, Set<Subscriber<S>>> subscribers = new ConcurrentHashMap<>();
+
+        private PropertyIndex(Function<S, ?> getter) {
+            this.getter = getter;
+        }
+
+        private void add(Object value, Subscriber<S> subscriber) {
+            subscribers.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+
+        private void remove(Object value, Subscriber<S> subscriber) {
+            subscribers.computeIfPresent(value, (v, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+
+        private void collect(@Nullable S object, Collection<Subscriber<S>> collector) {
+            Optional.ofNullable(object)
+                    .map(getter)
+                    .map(subscribers::get)
+                    .ifPresent(collector::addAll);
+        }
+    }
+
+    private LiveQueryDispatcher(Observable<Notification<S>> upstream, ExpressionCompiler compiler) {
+        this.compiler = compiler;
+        this.upstream = upstream
+                .doOnNext(this::dispatch)
+                .doOnComplete(() -> allSubscribers().forEach(subscriber -> subscriber.emitter.onComplete()))
+                .ignoreElements()
+                .<Notification<S>>toObservable()
+                .share();
+    }
+
+    static <S> LiveQueryDispatcher<S> create(Observable<Notification<S>> upstream) {
+        return create(upstream, ExpressionCompiler.standard());
+    }
+
+    static <S> LiveQueryDispatcher<S> create(Observable<Notification<S>> upstream, ExpressionCompiler compiler) {
+        return new LiveQueryDispatcher<>(upstream, compiler);
+    }
+
+    Observable<Notification<S>> observe(@Nullable ObjectExpression<S, Boolean> predicate) {
+        Optional<Map.Entry<PropertyExpression<S, ?, ?>, Object>> indexKey = Optional
+                .ofNullable(predicate)
+                .flatMap(LiveQueryDispatcher::findEquality);
+        Predicate<S> compiledPredicate = compiler.compileRxPredicate(predicate);
+
+        return Observable.<Notification<S>>create(emitter -> {
+            Subscriber<S> subscriber = new Subscriber<>(compiledPredicate, emitter);
+            if (indexKey.isPresent()) {
+                PropertyIndex<S> index = indexes.computeIfAbsent(indexKey.get().getKey(), p -> new PropertyIndex<>(compiler.compile(p)));
+                Object value = indexKey.get().getValue();
+                index.add(value, subscriber);
+                emitter.setCancellable(() -> index.remove(value, subscriber));
+            } else {
+                unindexedSubscribers.add(subscriber);
+                emitter.setCancellable(() -> unindexedSubscribers.remove(subscriber));
+            }
+        }).mergeWith(upstream);
+    }
+
+    private Collection<Subscriber<S>> allSubscribers() {
+        Collection<Subscriber<S>> subscribers = new ArrayList<>(unindexedSubscribers);
+        indexes.values().forEach(index -> index.subscribers.values().forEach(subscribers::addAll));
+        return subscribers;
+    }
+
+    private void dispatch(Notification<S> notification) {
+        Collection<Subscriber<S>> subscribers;
+        if (notification.isEmpty()) {
+            subscribers = allSubscribers();
+        } else {
+            subscribers = Collections.newSetFromMap(new IdentityHashMap<>());
+            subscribers.addAll(unindexedSubscribers);
+            indexes.values().forEach(index -> {
+                index.collect(notification.oldValue(), subscribers);
+                index.collect(notification.newValue(), subscribers);
+            });
+        }
+        subscribers.forEach(subscriber -> subscriber.onNotification(notification));
+    }
+
+    /**
+     * Looks for {@code property == constant} condition, which must hold for the whole predicate to be satisfied.
+     * Only constants of exactly the property type are considered, as the index relies on {@code equals()}.
+     */
+    @SuppressWarnings("unchecked")
+    private static <S> Optional<Map.Entry<PropertyExpression<S, ?, ?>, Object>> findEquality(ObjectExpression<S, ?> expression) {
+        expression = unwrap(expression);
+        if (expression.type() == Expression.Type.And) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            Optional<Map.Entry<PropertyExpression<S, ?, ?>, Object>> left = findEquality(binary.left());
+            return left.isPresent() ? left : findEquality(binary.right());
+        }
+        if (expression.type() == Expression.Type.Equals) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            ObjectExpression<S, ?> left = unwrap(binary.left());
+            ObjectExpression<S, ?> right = unwrap(binary.right());
+            if (left instanceof PropertyExpression && right instanceof ConstantExpression) {
+                return toIndexKey((PropertyExpression<S, ?, ?>)left, ((ConstantExpression<S, ?>)right).value());
+            }
+            if (right instanceof PropertyExpression && left instanceof ConstantExpression) {
+                return toIndexKey((PropertyExpression<S, ?, ?>)right, ((ConstantExpression<S, ?>)left).value());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static <S> Optional<Map.Entry<PropertyExpression<S, ?, ?>, Object>> toIndexKey(PropertyExpression<S, ?, ?> property, Object value) {
+        return value != null && Primitives.wrap(property.property().type().getRawType()) == value.getClass()
+                ? Optional.of(new AbstractMap.SimpleImmutableEntry<>(property, value))
+                : Optional.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, T> ObjectExpression<S, T> unwrap(ObjectExpression<S, T> expression) {
+        while (expression instanceof DelegateExpression && !(expression instanceof PropertyExpression)) {
+            expression = ((DelegateExpression<S, T>)expression).delegate();
+        }
+        return expression;
+    }
+}
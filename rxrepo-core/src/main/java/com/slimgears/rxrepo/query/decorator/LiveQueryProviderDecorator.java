@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.query.decorator;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.Expression;
@@ -12,46 +13,93 @@ import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.PredicateBuilder;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.*;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.functions.Function;
 
 import javax.annotation.Nullable;
 import java.time.Duration;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static int maxReferenceBatchSize = 500;
     private final Duration aggregationDebounceTime;
+    private final Duration referenceBatchTime;
+    private final ExpressionCompiler compiler;
+    private final Map<QueryInfo<?, ?, ?>, LiveQueryDispatcher<?>> dispatchers = new ConcurrentHashMap<>();
 
-    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime) {
+    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime, Duration referenceBatchTime, ExpressionCompiler compiler) {
         super(upstream);
         this.aggregationDebounceTime = aggregationDebounceTime;
+        this.referenceBatchTime = referenceBatchTime;
+        this.compiler = compiler;
     }
 
     public static QueryProvider.Decorator create(Duration aggregationDebounceTime) {
-        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime);
+        return create(aggregationDebounceTime, Duration.ZERO);
+    }
+
+    /**
+     * @param referenceBatchTime time window, during which notifications of referenced objects are collected,
+     *                           to be resolved into notifications of referencing objects by a single query.
+     *                           {@link Duration#ZERO} (default) does not delay notifications: only those received
+     *                           while the previous batch is being resolved are batched together
+     */
+    public static QueryProvider.Decorator create(Duration aggregationDebounceTime, Duration referenceBatchTime) {
+        return create(aggregationDebounceTime, referenceBatchTime, ExpressionCompiler.standard());
+    }
+
+    /**
+     * @param compiler compiler of predicates, by which notifications are dispatched to subscribers
+     *                 (e.g. {@link ExpressionCompiler#specialized()})
+     */
+    public static QueryProvider.Decorator create(Duration aggregationDebounceTime, Duration referenceBatchTime, ExpressionCompiler compiler) {
+        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime, referenceBatchTime, compiler);
     }
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return super.liveQuery(QueryInfo.<K, S, S>builder()
+        return dispatcherOf(QueryInfo.<K, S, S>builder()
                         .metaClass(query.metaClass())
                         .properties(QueryInfos.allReferencedProperties(query))
                         .build())
+                .observe(query.predicate())
                 .compose(applyReferencedObserve(query))
-                .compose(Notifications.applyFilter(query.predicate()))
                 .compose(Notifications.applyMap(query.mapping()))
                 .compose(Notifications.applyFieldsFilter(query.properties()));
     }
 
+    /**
+     * Returns dispatcher, sharing single upstream live query (per entity type and set of observed properties)
+     * between all subscribers, and routing notifications only to subscribers with matching predicates.
+     */
+    @SuppressWarnings("unchecked")
+    private <K, S> LiveQueryDispatcher<S> dispatcherOf(QueryInfo<K, S, S> upstreamQuery) {
+        return (LiveQueryDispatcher<S>)dispatchers.computeIfAbsent(upstreamQuery, q -> createDispatcher(upstreamQuery));
+    }
+
+    /**
+     * Dispatcher is evicted once its upstream terminates, or is disposed after the last subscriber unsubscribes
+     */
+    private <K, S> LiveQueryDispatcher<S> createDispatcher(QueryInfo<K, S, S> upstreamQuery) {
+        AtomicReference<LiveQueryDispatcher<S>> dispatcher = new AtomicReference<>();
+        dispatcher.set(LiveQueryDispatcher.create(super.liveQuery(upstreamQuery)
+                .doFinally(() -> dispatchers.remove(upstreamQuery, dispatcher.get())), compiler));
+        return dispatcher.get();
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
         return Queries.queryAndObserve(
@@ -61,12 +109,45 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
 
     @Override
     public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        if (IncrementalAggregation.create(aggregator).isPresent()) {
+            return incrementalAggregate(query, aggregator);
+        }
         return liveQuery(query.toBuilder().predicate(null).build())
             .throttleLatest(aggregationDebounceTime.toMillis(), TimeUnit.MILLISECONDS)
             .switchMapMaybe(n -> aggregate(query, aggregator))
             .distinctUntilChanged();
     }
 
+    /**
+     * Aggregation is queried once, and then maintained from notifications, collected during debounce time.
+     * It is re-queried only if it cannot be updated incrementally (e.g. current min/max is removed), or if
+     * notifications were received while the query was executed (as these may or may not be reflected in its result).
+     */
+    private <K, S, T, R> Observable<R> incrementalAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        return Observable.defer(() -> {
+            IncrementalAggregation<T, R> aggregation = IncrementalAggregation.create(aggregator)
+                    .orElseThrow(() -> new IllegalArgumentException("Aggregator is not supported: " + aggregator));
+            AtomicLong receivedCount = new AtomicLong();
+            AtomicBoolean isValid = new AtomicBoolean();
+            return liveQuery(query)
+                    .filter(n -> !n.isEmpty())
+                    .doOnNext(n -> receivedCount.incrementAndGet())
+                    .buffer(aggregationDebounceTime.toMillis(), TimeUnit.MILLISECONDS)
+                    .filter(notifications -> !notifications.isEmpty())
+                    // Initial query is issued only after live query subscription, so no change is missed
+                    .mergeWith(Observable.just(Collections.<Notification<T>>emptyList()))
+                    .concatMapMaybe(notifications -> {
+                        if (isValid.get() && notifications.stream().allMatch(aggregation::apply)) {
+                            return aggregation.value();
+                        }
+                        long countBeforeQuery = receivedCount.get();
+                        return aggregation.snapshot(this, query)
+                                .doOnEvent((value, error) -> isValid.set(error == null && receivedCount.get() == countBeforeQuery));
+                    })
+                    .distinctUntilChanged();
+        });
+    }
+
     private <K, S, T> ObservableTransformer<Notification<S>, Notification<S>> applyReferencedObserve(QueryInfo<K, S, T> query) {
         QueryInfo<K, S, S> unmappedQuery = QueryInfos
                 .unmapQuery(query)
@@ -90,6 +171,7 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
                 .filter(PropertyExpressions::isReference)
                 .map(p -> observeReferenceProperty(unmappedQuery, p, propertiesByRoot.get(p), lastCreatedSequenceNumber))
                 .reduce(Observable::mergeWith)
+                .map(o -> o.compose(Notifications.applyFilter(query.predicate(), compiler)))
                 .<ObservableTransformer<Notification<S>, Notification<S>>>map(o -> src -> src.mergeWith(o))
                 .orElse(src -> src);
 
@@ -111,50 +193,111 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
         return observeReferenceProperty(query, referenceProperty, referenceProperties, MetaClasses.forTokenWithKeyUnchecked(referenceProperty.reflect().objectType()), lastCreatedSequenceNumber);
     }
 
-    @SuppressWarnings({"unchecked", "ReactiveStreamsNullableInLambdaInTransform"})
     private <K1, S1, K2, S2> Observable<Notification<S1>> observeReferenceProperty(QueryInfo<K1, S1, S1> query, PropertyExpression<S1, S1, S2> referenceProperty, ImmutableSet<PropertyExpression<S2, ?, ?>> properties, MetaClassWithKey<K2, S2> metaClassWithKey, AtomicReference<Long> lastCreatedSequenceNumber) {
         return observeReference(metaClassWithKey, properties)
                 .filter(n -> n.isModify() || n.isDelete())
                 .doOnNext(n -> log.trace("Received referenced notification: {} (last seq.: {}), {}", n.sequenceNumber(), lastCreatedSequenceNumber.get(), n))
-                .flatMapIterable(n -> query(QueryInfo
-                        .<K1, S1, S1>builder()
-                        .metaClass(query.metaClass())
-                        .properties(PropertyExpressions.includeMandatoryProperties(query.objectType(), query.properties()))
-                        .predicate(PredicateBuilder.<S1>create()
-                                //.and(query.predicate())
-                                .and(matchReferenceId(n.oldValue(), referenceProperty, metaClassWithKey))
-                                .and(matchSequenceNumber(query.metaClass(), lastCreatedSequenceNumber.get(), n.sequenceNumber()))
-                                .build())
+                .compose(concatMapBatches(notifications -> resolveReferencingObjects(query, referenceProperty, metaClassWithKey, notifications, lastCreatedSequenceNumber.get())));
+    }
+
+    /**
+     * Maps batches sequentially, batching either by reference batch time window, or (when zero) by draining
+     * all items queued while the previous batch was mapped
+     */
+    private <T, R> ObservableTransformer<T, R> concatMapBatches(Function<List<T>, Observable<R>> mapper) {
+        if (!referenceBatchTime.isZero()) {
+            return src -> src
+                    .buffer(referenceBatchTime.toMillis(), TimeUnit.MILLISECONDS, maxReferenceBatchSize)
+                    .filter(batch -> !batch.isEmpty())
+                    .concatMap(mapper);
+        }
+        return src -> Observable.defer(() -> {
+            Queue<T> pending = new ConcurrentLinkedQueue<>();
+            return src
+                    .doOnNext(pending::add)
+                    .concatMap(item -> Observable.defer(() -> {
+                        List<T> batch = new ArrayList<>();
+                        for (T next = pending.poll(); next != null; next = batch.size() < maxReferenceBatchSize ? pending.poll() : null) {
+                            batch.add(next);
+                        }
+                        return !batch.isEmpty() ? mapper.apply(batch) : Observable.empty();
+                    }));
+        });
+    }
+
+    /**
+     * Resolves batch of referenced object notifications into notifications of referencing objects, using single query.
+     * Notifications of the same referenced object are applied in their original order. As the query is bounded by
+     * the latest sequence number of the batch, each notification is applied only to referencing objects, which
+     * were not created (or modified) after its own sequence number.
+     */
+    @SuppressWarnings("unchecked")
+    private <K1, S1, K2, S2> Observable<Notification<S1>> resolveReferencingObjects(QueryInfo<K1, S1, S1> query, PropertyExpression<S1, S1, S2> referenceProperty, MetaClassWithKey<K2, S2> metaClassWithKey, List<Notification<S2>> notifications, @Nullable Long lastCreatedSequenceNumber) {
+        Map<K2, List<Notification<S2>>> notificationsByKey = notifications
+                .stream()
+                .collect(Collectors.groupingBy(n -> metaClassWithKey.keyOf(n.oldValue()), LinkedHashMap::new, Collectors.toList()));
+
+        Long maxSequenceNumber = notifications
+                .stream()
+                .map(Notification::sequenceNumber)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(null);
+
+        return query(QueryInfo
+                .<K1, S1, S1>builder()
+                .metaClass(query.metaClass())
+                .properties(PropertyExpressions.includeMandatoryProperties(query.objectType(), query.properties()))
+                .predicate(PredicateBuilder.<S1>create()
+                        .and(matchReferenceIds(notificationsByKey.keySet(), referenceProperty, metaClassWithKey))
+                        .and(matchSequenceNumber(query.metaClass(), lastCreatedSequenceNumber, maxSequenceNumber))
                         .build())
-                        .map(Notification::newValue)
-                        .map(obj -> {
-                            MetaBuilder<S1> builder = ((HasMetaClass<S1>)obj).toBuilder();
-                            referenceProperty.property().setValue(builder, n.oldValue());
-                            S1 oldValue = builder.build();
-                            referenceProperty.property().setValue(builder, n.newValue());
-                            S1 newValue = builder.build();
-                            return Notification.create(oldValue, newValue, n.sequenceNumber());
-                        })
-                        .blockingIterable());
+                .build())
+                .concatMapIterable(referencing -> {
+                    S1 obj = referencing.newValue();
+                    return Optional
+                            .ofNullable(referenceProperty.property().getValue(obj))
+                            .map(metaClassWithKey::keyOf)
+                            .map(notificationsByKey::get)
+                            .orElseGet(Collections::emptyList)
+                            .stream()
+                            .filter(n -> existedAt(referencing.sequenceNumber(), n.sequenceNumber()))
+                            .map(n -> {
+                                MetaBuilder<S1> builder = ((HasMetaClass<S1>)obj).toBuilder();
+                                referenceProperty.property().setValue(builder, n.oldValue());
+                                S1 oldValue = builder.build();
+                                referenceProperty.property().setValue(builder, n.newValue());
+                                S1 newValue = builder.build();
+                                return Notification.create(oldValue, newValue, n.sequenceNumber());
+                            })
+                            .collect(Collectors.toList());
+                });
     }
 
-    @SuppressWarnings("UnstableApiUsage")
-    private <S> ObjectExpression<S, Boolean> matchSequenceNumber(MetaClass<S> sourceMeta, @Nullable Long lastCreatedSeqNum, @Nullable Long notificationSeqNum) {
-        Long seqNum = lastCreatedSeqNum != null && notificationSeqNum != null
+    private static boolean existedAt(@Nullable Long objectSeqNum, @Nullable Long seqNum) {
+        return objectSeqNum == null || seqNum == null || objectSeqNum <= seqNum;
+    }
+
+    @Nullable
+    private static Long sequenceNumberBound(@Nullable Long lastCreatedSeqNum, @Nullable Long notificationSeqNum) {
+        return lastCreatedSeqNum != null && notificationSeqNum != null
                 ? Long.valueOf(Math.max(lastCreatedSeqNum, notificationSeqNum))
                 : lastCreatedSeqNum != null ? lastCreatedSeqNum : notificationSeqNum;
+    }
 
+    @SuppressWarnings("UnstableApiUsage")
+    private <S> ObjectExpression<S, Boolean> matchSequenceNumber(MetaClass<S> sourceMeta, @Nullable Long lastCreatedSeqNum, @Nullable Long notificationSeqNum) {
         return Optional
-                .ofNullable(seqNum)
+                .ofNullable(sequenceNumberBound(lastCreatedSeqNum, notificationSeqNum))
                 .<ObjectExpression<S, Boolean>>map(sn -> NumericUnaryOperationExpression.<S, S, Long>create(Expression.Type.SequenceNumber, ObjectExpression.objectArg(sourceMeta.asType()))
                         .lessOrEqual(sn))
                 .orElse(null);
     }
 
-    private <S, KT, T> ObjectExpression<S, Boolean> matchReferenceId(T referencedObject, PropertyExpression<S, S, T> referenceProperty, MetaClassWithKey<KT, T> metaClass) {
-        return PropertyExpression
-                .ofObject(referenceProperty, metaClass.keyProperty())
-                .eq(metaClass.keyOf(referencedObject));
+    private <S, KT, T> ObjectExpression<S, Boolean> matchReferenceIds(Collection<KT> referencedKeys, PropertyExpression<S, S, T> referenceProperty, MetaClassWithKey<KT, T> metaClass) {
+        return referencedKeys.size() == 1
+                ? PropertyExpression.ofObject(referenceProperty, metaClass.keyProperty()).eq(referencedKeys.iterator().next())
+                : PropertyExpression.ofObject(referenceProperty, metaClass.keyProperty()).in(ImmutableList.copyOf(referencedKeys));
     }
 
     private <K, S> Observable<Notification<S>> observeReference(MetaClassWithKey<K, S> metaClass, ImmutableSet<PropertyExpression<S, ?, ?>> properties) {
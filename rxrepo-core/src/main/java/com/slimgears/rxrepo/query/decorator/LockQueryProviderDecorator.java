@@ -67,6 +67,12 @@ public class LockQueryProviderDecorator extends AbstractQueryProviderDecorator {
                 .compose(LockProviders.forCompletable(lockProvider));
     }
 
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return super.transaction(body)
+                .compose(LockProviders.forCompletable(lockProvider));
+    }
+
     @Override
     public void close() {
         lockProvider.withLock(super::close);
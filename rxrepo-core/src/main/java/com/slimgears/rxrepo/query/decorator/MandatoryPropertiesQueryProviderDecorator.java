@@ -34,4 +34,9 @@ public class MandatoryPropertiesQueryProviderDecorator extends AbstractQueryProv
         return super.liveQuery(QueryInfos.includeMandatoryProperties(query));
     }
 
+    @Override
+    protected QueryProvider decorateTransaction(QueryProvider transaction) {
+        return new MandatoryPropertiesQueryProviderDecorator(transaction);
+    }
+
 }
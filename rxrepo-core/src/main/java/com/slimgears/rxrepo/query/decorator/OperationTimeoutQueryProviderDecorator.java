@@ -87,6 +87,12 @@ public class OperationTimeoutQueryProviderDecorator extends AbstractQueryProvide
                 .compose(Timeout.forCompletable(updateTimeout));
     }
 
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return super.transaction(body)
+                .compose(Timeout.forCompletable(updateTimeout));
+    }
+
     @Override
     public Completable dropAll() {
         return super.dropAll()
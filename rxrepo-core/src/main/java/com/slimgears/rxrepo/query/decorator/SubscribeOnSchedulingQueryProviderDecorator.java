@@ -78,6 +78,11 @@ public class SubscribeOnSchedulingQueryProviderDecorator extends AbstractQueryPr
         return super.drop(metaClass).subscribeOn(updateScheduler);
     }
 
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return super.transaction(body).subscribeOn(updateScheduler);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         return super.query(query).subscribeOn(queryScheduler);
@@ -55,6 +55,11 @@ public class UpdateReferencesFirstQueryProviderDecorator extends AbstractQueryPr
                         : Maybe.just(updatedEntity)));
     }
 
+    @Override
+    protected QueryProvider decorateTransaction(QueryProvider transaction) {
+        return new UpdateReferencesFirstQueryProviderDecorator(transaction);
+    }
+
     private <K, S> Completable insertEntity(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
         return query(QueryInfo
                 .<K, S, S>builder()
@@ -48,6 +48,16 @@ public interface QueryProvider extends AutoCloseable {
             .distinctUntilChanged();
     }
 
+    /**
+     * Runs {@code body} against provider, bound to a single transaction. The transaction is committed when
+     * completable, returned by {@code body}, completes, and rolled back when it fails. Notifications of the
+     * changes, made within transaction, are emitted once, on commit.
+     * Default implementation is not transactional: operations of {@code body} are applied to this provider as they execute.
+     */
+    default Completable transaction(Function<QueryProvider, Completable> body) {
+        return Completable.defer(() -> body.apply(this));
+    }
+
     default void close() {
     }
 
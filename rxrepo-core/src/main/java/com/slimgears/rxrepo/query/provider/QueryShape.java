@@ -0,0 +1,167 @@
+package com.slimgears.rxrepo.query.provider;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.CollectionOperationExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ExpressionVisitor;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.*;
+
+/**
+ * Normalized form of a query, in which every {@link com.slimgears.rxrepo.expressions.ConstantExpression}
+ * is hoisted into a positional argument. Queries, differing only by constant values, have equal {@link #key()}s,
+ * while the values themselves are available (in depth-first, left-to-right order) through {@link #args()}.
+ * Parts are listed in the order they typically appear in generated statements (projection, then condition).
+ */
+public final class QueryShape {
+    private final static ShapeVisitor shapeVisitor = new ShapeVisitor();
+    private final List<Object> key;
+    private final Object[] args;
+
+    private QueryShape(List<Object> key, Object[] args) {
+        this.key = key;
+        this.args = args;
+    }
+
+    public static QueryShape of(Object... parts) {
+        List<Object> args = new ArrayList<>();
+        List<Object> key = normalize(Arrays.asList(parts), args);
+        return new QueryShape(key, args.toArray());
+    }
+
+    public static <K, S, T> QueryShape of(QueryInfo<K, S, T> query) {
+        return of(
+                query.metaClass(),
+                query.mapping(),
+                query.distinct(),
+                query.properties(),
+                query.predicate(),
+                query.sorting(),
+                query.limit(),
+                query.skip());
+    }
+
+    public static <K, S> QueryShape of(UpdateInfo<K, S> update) {
+        return of(
+                update.metaClass(),
+                update.propertyUpdates(),
+                update.collectionPropertyUpdates(),
+                update.predicate(),
+                update.limit());
+    }
+
+    public static <K, S> QueryShape of(DeleteInfo<K, S> delete) {
+        return of(
+                delete.metaClass(),
+                delete.predicate(),
+                delete.limit());
+    }
+
+    public Object key() {
+        return key;
+    }
+
+    public Object[] args() {
+        return args;
+    }
+
+    /**
+     * Checks whether the given arguments (e.g. arguments of a statement, generated for the original query)
+     * are exactly the hoisted constants, in the same order. Only in this case a statement generated for one
+     * instance of the shape can be reused for another one by substituting {@link #args()}.
+     * Shapes having the same argument instance more than once are never considered bound, as the order of
+     * such arguments cannot be verified.
+     */
+    public boolean isBoundBy(Object[] statementArgs) {
+        if (statementArgs.length != args.length) {
+            return false;
+        }
+        Set<Object> distinctArgs = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < args.length; ++i) {
+            if (statementArgs[i] != args[i] || !distinctArgs.add(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof QueryShape &&
+                key.equals(((QueryShape)obj).key) &&
+                Arrays.equals(args, ((QueryShape)obj).args);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, Arrays.hashCode(args));
+    }
+
+    @Override
+    public String toString() {
+        return key + " " + Arrays.toString(args);
+    }
+
+    private static List<Object> normalize(Collection<?> parts, List<Object> args) {
+        List<Object> normalized = new ArrayList<>(parts.size());
+        parts.forEach(part -> normalized.add(normalize(part, args)));
+        return normalized;
+    }
+
+    private static Object normalize(Object part, List<Object> args) {
+        if (part instanceof ObjectExpression) {
+            return shapeVisitor.visit((ObjectExpression<?, ?>)part, args);
+        } else if (part instanceof PropertyUpdateInfo) {
+            PropertyUpdateInfo<?, ?, ?> propertyUpdate = (PropertyUpdateInfo<?, ?, ?>)part;
+            return Arrays.asList(
+                    normalize(propertyUpdate.property(), args),
+                    normalize(propertyUpdate.updater(), args));
+        } else if (part instanceof QueryShape) {
+            args.addAll(Arrays.asList(((QueryShape)part).args));
+            return ((QueryShape)part).key;
+        } else if (part instanceof Collection) {
+            return normalize((Collection<?>)part, args);
+        }
+        return part;
+    }
+
+    private static class ShapeVisitor extends ExpressionVisitor<List<Object>, Object> {
+        @Override
+        protected <S, T> Object visitOther(ObjectExpression<S, T> expression, List<Object> args) {
+            if (expression instanceof CollectionOperationExpression) {
+                CollectionOperationExpression<?, ?, ?, ?, ?, ?> operation = (CollectionOperationExpression<?, ?, ?, ?, ?, ?>)expression;
+                return Arrays.asList(expression.type(), visit(operation.source(), args), visit(operation.operation(), args));
+            }
+            // Not normalized: constants (if any) remain part of the key
+            return expression;
+        }
+
+        @Override
+        protected Object reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Object first, Object second) {
+            return Arrays.asList(type, first, second);
+        }
+
+        @Override
+        protected Object reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Object first) {
+            return Arrays.asList(type, first);
+        }
+
+        @Override
+        protected <T, V> Object visitProperty(PropertyMeta<T, V> propertyMeta, List<Object> args) {
+            return propertyMeta;
+        }
+
+        @Override
+        protected <V> Object visitConstant(Expression.Type type, V value, List<Object> args) {
+            args.add(value);
+            return Arrays.asList(type, value != null ? value.getClass() : null);
+        }
+
+        @Override
+        protected <T> Object visitArgument(TypeToken<T> argType, List<Object> args) {
+            return argType;
+        }
+    }
+}
@@ -1,9 +1,24 @@
 package com.slimgears.rxrepo.query.provider;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
 import com.slimgears.util.stream.Streams;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 
 @SuppressWarnings("WeakerAccess")
 public class SortingInfos {
@@ -18,4 +33,95 @@ public class SortingInfos {
                 .reduce(Comparator::thenComparing)
                 .orElse(null);
     }
+
+    /**
+     * Completes sorting, so that it defines total order of the entities (as required by seek pagination).
+     * Sorting, including key or unique indexed property, is returned as is. Otherwise, key is appended (if key
+     * is an embedded object, its properties are appended instead).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <K, S> ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> toUniqueSorting(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        if (sorting.stream().anyMatch(sortingInfo -> isUnique(metaClass, sortingInfo.property()))) {
+            return sorting;
+        }
+
+        ObjectExpression<S, S> arg = ObjectExpression.arg(metaClass.asType());
+        PropertyMeta keyProperty = metaClass.keyProperty();
+        ImmutableList.Builder<SortingInfo<S, ?, ? extends Comparable<?>>> builder = ImmutableList.<SortingInfo<S, ?, ? extends Comparable<?>>>builder().addAll(sorting);
+        if (isComparable(keyProperty)) {
+            return builder.add(SortingInfo.create(PropertyExpression.ofComparable(arg, keyProperty), true)).build();
+        }
+
+        MetaClass keyMetaClass = PropertyMetas.isEmbedded(keyProperty) ? MetaClasses.forTokenUnchecked(keyProperty.type()) : null;
+        if (keyMetaClass == null || !Streams.fromIterable((Iterable<PropertyMeta<?, ?>>)keyMetaClass.properties()).allMatch(SortingInfos::isComparable)) {
+            throw new IllegalArgumentException("Cannot complete sorting of " + metaClass.simpleName() + " to unique one: key is not comparable");
+        }
+        ObjectExpression keyExpression = PropertyExpression.ofObject(arg, keyProperty);
+        Streams.fromIterable((Iterable<PropertyMeta>)keyMetaClass.properties())
+                .forEach(p -> builder.add(SortingInfo.create(PropertyExpression.ofComparable(keyExpression, p), true)));
+        return builder.build();
+    }
+
+    /**
+     * Creates predicate, selecting entities which follow {@code anchor} in order, defined by {@code sorting}
+     * (which is expected to be unique, see {@link #toUniqueSorting(MetaClassWithKey, ImmutableList)}), i.e.
+     * {@code (p1 > v1) or (p1 == v1 and p2 > v2) or ...}.
+     * Sorting properties must not be nullable: providers place nulls differently (first or last), so no predicate
+     * matches the order of every provider.
+     *
+     * @throws IllegalArgumentException if some sorting property (or any property on its path) is nullable
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <S> ObjectExpression<S, Boolean> toSeekPredicate(List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting, S anchor) {
+        sorting.stream()
+                .map(SortingInfo::property)
+                .filter(SortingInfos::isNullable)
+                .findFirst()
+                .ifPresent(property -> {
+                    throw new IllegalArgumentException("Seek pagination does not support sorting by nullable property: " + property);
+                });
+
+        List<ObjectExpression<S, Boolean>> alternatives = new ArrayList<>();
+        List<ObjectExpression<S, Boolean>> equalities = new ArrayList<>();
+        for (SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo : sorting) {
+            PropertyExpression property = sortingInfo.property();
+            Comparable value = (Comparable)Expressions.compile(property).apply(anchor);
+            List<ObjectExpression<S, Boolean>> conditions = new ArrayList<>(equalities);
+            conditions.add(sortingInfo.ascending()
+                    ? ObjectExpression.asComparable(property).greaterThan(value)
+                    : ObjectExpression.asComparable(property).lessThan(value));
+            alternatives.add(all(conditions));
+            equalities.add(property.eq(value));
+        }
+        return alternatives.isEmpty()
+                ? BooleanExpression.ofFalse()
+                : alternatives.stream().reduce((a, b) -> BooleanExpression.or(a, b)).get();
+    }
+
+    private static boolean isNullable(PropertyExpression<?, ?, ?> property) {
+        for (ObjectExpression<?, ?> exp = property; exp instanceof PropertyExpression; exp = ((PropertyExpression<?, ?, ?>)exp).target()) {
+            if (((PropertyExpression<?, ?, ?>)exp).property().hasAnnotation(Nullable.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <S> ObjectExpression<S, Boolean> all(List<ObjectExpression<S, Boolean>> conditions) {
+        return conditions.stream().reduce((a, b) -> BooleanExpression.and(a, b)).get();
+    }
+
+    private static <K, S> boolean isUnique(MetaClassWithKey<K, S> metaClass, PropertyExpression<S, ?, ?> property) {
+        if (property.target().type().operationType() != Expression.OperationType.Argument) {
+            return false;
+        }
+        return property.property() == metaClass.keyProperty() ||
+                (property.property().hasAnnotation(Indexable.class) && property.property().getAnnotation(Indexable.class).unique());
+    }
+
+    private static boolean isComparable(PropertyMeta<?, ?> property) {
+        return Comparable.class.isAssignableFrom(Primitives.wrap(property.type().getRawType()));
+    }
 }
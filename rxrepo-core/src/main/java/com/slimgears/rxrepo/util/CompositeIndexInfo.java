@@ -0,0 +1,78 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.annotations.CompositeIndex;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Resolved {@link CompositeIndex} declaration. Annotation is looked up on the entity class and all its
+ * supertypes, as annotations of the prototype interface are not inherited by the generated class.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class CompositeIndexInfo<S> {
+    private final static Map<Class<?>, ImmutableList<? extends CompositeIndexInfo<?>>> cache = new ConcurrentHashMap<>();
+    private final String name;
+    private final ImmutableList<PropertyMeta<S, ?>> properties;
+    private final boolean unique;
+    private final boolean ordered;
+
+    private CompositeIndexInfo(ImmutableList<PropertyMeta<S, ?>> properties, boolean unique, boolean ordered) {
+        this.name = properties.stream().map(PropertyMeta::name).collect(Collectors.joining("_"));
+        this.properties = properties;
+        this.unique = unique;
+        this.ordered = ordered;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <S> ImmutableList<CompositeIndexInfo<S>> of(MetaClass<S> metaClass) {
+        return (ImmutableList<CompositeIndexInfo<S>>)cache.computeIfAbsent(metaClass.asClass(), c -> resolve(metaClass));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public ImmutableList<PropertyMeta<S, ?>> properties() {
+        return properties;
+    }
+
+    public boolean unique() {
+        return unique;
+    }
+
+    public boolean ordered() {
+        return ordered;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static <S> ImmutableList<CompositeIndexInfo<S>> resolve(MetaClass<S> metaClass) {
+        return TypeToken.of(metaClass.asClass()).getTypes().rawTypes()
+                .stream()
+                .flatMap(cls -> Arrays.stream(cls.getDeclaredAnnotationsByType(CompositeIndex.class)))
+                .distinct()
+                .map(annotation -> new CompositeIndexInfo<>(
+                        Arrays.stream(annotation.value())
+                                .map(name -> propertyOf(metaClass, name))
+                                .collect(ImmutableList.toImmutableList()),
+                        annotation.unique(),
+                        annotation.ordered()))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private static <S> PropertyMeta<S, ?> propertyOf(MetaClass<S> metaClass, String name) {
+        return Optional.<PropertyMeta<S, ?>>ofNullable(metaClass.getProperty(name))
+                .orElseThrow(() -> new IllegalArgumentException("Composite index of " + metaClass.simpleName() + " refers to unknown property: " + name));
+    }
+}
@@ -0,0 +1,35 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+
+import java.util.function.Function;
+
+/**
+ * Compiles expressions into functions, evaluated by in-process query execution (memory provider, live query filtering).
+ * {@link #standard()} is used by default, {@link #specialized()} can be opted into by providers and decorators, which accept compiler.
+ */
+public interface ExpressionCompiler {
+    <S, T> Function<S, T> compile(ObjectExpression<S, T> exp);
+
+    default <S> io.reactivex.functions.Predicate<S> compileRxPredicate(ObjectExpression<S, Boolean> predicateExp) {
+        if (predicateExp == null) {
+            return e -> true;
+        }
+        Function<S, Boolean> predicate = compile(predicateExp);
+        return predicate::apply;
+    }
+
+    /**
+     * @return Compiler of {@link Expressions#compile(ObjectExpression)}
+     */
+    static ExpressionCompiler standard() {
+        return Expressions::compile;
+    }
+
+    /**
+     * @return Compiler of {@link Expressions#compileSpecialized(ObjectExpression)}
+     */
+    static ExpressionCompiler specialized() {
+        return Expressions::compileSpecialized;
+    }
+}
@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.util;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.encoding.MetaClassSearchableFields;
 import com.slimgears.rxrepo.expressions.*;
@@ -28,9 +29,48 @@ public class Expressions {
 
     @SuppressWarnings("unchecked")
     public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
-        return exp != null
-                ? (Function<S, T>)new InternalVisitor().visit(exp, null)
-                : (Function<S, T>)Function.identity();
+        if (exp == null) {
+            return (Function<S, T>)Function.identity();
+        }
+        return (Function<S, T>)new InternalVisitor().visit(exp, null);
+    }
+
+    /**
+     * Compiles expression by {@link SpecializedExpressionCompiler}, which caches compiled templates per expression
+     * shape and specializes property access and comparisons.
+     * Expressions not supported by specialized compiler are compiled by {@link #compile(ObjectExpression)}.
+     * Providers and decorators opt into it by {@link ExpressionCompiler#specialized()}.
+     */
+    public static <S, T> Function<S, T> compileSpecialized(ObjectExpression<S, T> exp) {
+        if (exp == null) {
+            return compile(null);
+        }
+        return SpecializedExpressionCompiler.tryCompile(exp).orElseGet(() -> compile(exp));
+    }
+
+    static Function reduce(Expression.Type type, Function... functions) {
+        return InternalVisitor.reduce(type, functions);
+    }
+
+    static Function constant(Object value) {
+        return new ConstantFunction(value);
+    }
+
+    /**
+     * Function, returning constant value. Allows reducers to recognize constant operands and precompute
+     * whatever depends only on the constant (e.g. compiled regex pattern or hash set of values).
+     */
+    private static class ConstantFunction implements Function<Object, Object> {
+        private final Object value;
+
+        private ConstantFunction(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object apply(Object obj) {
+            return value;
+        }
     }
 
     public static <S, V extends Comparable<V>> Comparator<S> compileComparator(PropertyExpression<S, ?, V> property, boolean ascending) {
@@ -178,6 +218,18 @@ public class Expressions {
                 })
                 .build();
 
+        // Reducers for binary operations, which second operand is constant
+        private final static ImmutableMap<Expression.Type, BiFunction<Function, Object, Function>> constantOperandReducersMap = ImmutableMap.<Expression.Type, BiFunction<Function, Object, Function>>builder()
+                .put(Expression.Type.Matches, Expressions::matchesPattern)
+                .put(Expression.Type.ValueIn, Expressions::valueInSet)
+                .build();
+
+        // Unary operations, which are evaluated once when applied to constant operand
+        private final static ImmutableSet<Expression.Type> constantFoldableTypes = ImmutableSet.of(
+                Expression.Type.ToLower,
+                Expression.Type.ToUpper,
+                Expression.Type.Trim);
+
         private final static ImmutableMap<Expression.OperationType, Function<Function[], Function>> operationTypeReducersMap = ImmutableMap.<Expression.OperationType, Function<Function[], Function>>builder()
                 .put(Expression.OperationType.Property, composition())
                 .put(Expression.OperationType.Argument, funcs -> funcs[0])
@@ -186,6 +238,16 @@ public class Expressions {
                 .build();
 
         private static Function reduce(Expression.Type type, Function... functions) {
+            if (functions.length == 2 && functions[1] instanceof ConstantFunction && constantOperandReducersMap.containsKey(type)) {
+                return constantOperandReducersMap.get(type).apply(functions[0], ((ConstantFunction)functions[1]).value);
+            }
+            if (functions.length == 1 && functions[0] instanceof ConstantFunction && constantFoldableTypes.contains(type)) {
+                return new ConstantFunction(reduceNonConstant(type, functions).apply(null));
+            }
+            return reduceNonConstant(type, functions);
+        }
+
+        private static Function reduceNonConstant(Expression.Type type, Function... functions) {
             return Optionals.or(
                     () -> Optional.ofNullable(expressionTypeReducersMap.get(type)).map(r -> r.apply(functions)),
                     () -> Optional.ofNullable(operationTypeReducersMap.get(type.operationType())).map(r -> r.apply(functions)))
@@ -218,7 +280,7 @@ public class Expressions {
 
         @Override
         protected <V> Function visitConstant(Expression.Type type, V value, Void arg) {
-            return a -> value;
+            return new ConstantFunction(value);
         }
 
         @Override
@@ -310,6 +372,30 @@ public class Expressions {
         return (s1, s2) -> (s1 == null && s2 == null) || (s1 != null && s2 != null && s1.matches(s2));
     }
 
+    @SuppressWarnings("unchecked")
+    private static Function matchesPattern(Function func, Object regex) {
+        if (regex == null) {
+            return val -> func.apply(val) == null;
+        }
+        Pattern pattern = Pattern.compile((String)regex);
+        return val -> {
+            String str = (String)func.apply(val);
+            return str != null && pattern.matcher(str).matches();
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function valueInSet(Function func, Object values) {
+        if (values == null) {
+            return val -> false;
+        }
+        Set<Object> set = values instanceof Set ? (Set<Object>)values : new HashSet<>((Collection<Object>)values);
+        return val -> {
+            Object obj = func.apply(val);
+            return obj != null && set.contains(obj);
+        };
+    }
+
     private static <N extends Number> BiFunction<N, N, N> numericBinariesWithDefaultNumbers(BiFunction<N, N, N> func, N defaultValue1, N defaultValue2) {
         return (n1, n2) -> func.apply(getNumberOrDefault(n1, defaultValue1), getNumberOrDefault(n2, defaultValue2));
     }
@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.util;
 
+import com.google.common.math.LongMath;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
 import io.reactivex.*;
@@ -14,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -22,6 +24,52 @@ import java.util.function.Predicate;
 @SuppressWarnings("WeakerAccess")
 public class Queries {
     private final static Logger log = LoggerFactory.getLogger(Queries.class);
+    private final static long maxTopKCount = Integer.MAX_VALUE - 8;
+
+    private static class BoundedHeap<T> {
+        private final int capacity;
+        private final Comparator<Entry<T>> entryComparator;
+        private final PriorityQueue<Entry<T>> heap;
+        private long nextOrder;
+
+        private static class Entry<T> {
+            private final T item;
+            private final long order;
+
+            private Entry(T item, long order) {
+                this.item = item;
+                this.order = order;
+            }
+        }
+
+        private BoundedHeap(Comparator<? super T> comparator, int capacity) {
+            this.capacity = capacity;
+            this.entryComparator = Comparator.<Entry<T>, T>comparing(e -> e.item, comparator).thenComparingLong(e -> e.order);
+            // Largest retained entry is at the head, so it is the one to be evicted
+            this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)), entryComparator.reversed());
+        }
+
+        private void add(T item) {
+            if (capacity == 0) {
+                return;
+            }
+            Entry<T> entry = new Entry<>(item, nextOrder++);
+            if (heap.size() < capacity) {
+                heap.add(entry);
+            } else if (entryComparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        private List<T> toSortedList() {
+            List<Entry<T>> entries = new ArrayList<>(heap);
+            entries.sort(entryComparator);
+            List<T> items = new ArrayList<>(entries.size());
+            entries.forEach(e -> items.add(e.item));
+            return items;
+        }
+    }
 
     public static <T> Comparator<T> toComparator(HasSortingInfo<T> sortingInfo) {
         return sortingInfo.sorting()
@@ -58,6 +106,32 @@ public class Queries {
         return source -> source.sorted(comparator);
     }
 
+    /**
+     * Sorts items, retaining only ones, which may be selected by pagination (first {@code skip + limit} items),
+     * when limit is specified. Pagination itself is not applied.
+     */
+    public static <T> ObservableTransformer<T, T> applySorting(Comparator<? super T> comparator, HasPagination pagination) {
+        if (pagination.limit() == null) {
+            return source -> source.sorted(comparator);
+        }
+        long skip = Optional.ofNullable(pagination.skip()).orElse(0L);
+        return sortedTopK(comparator, LongMath.saturatedAdd(pagination.limit(), skip));
+    }
+
+    /**
+     * Same as {@code source.sorted(comparator).take(count)}, but instead of buffering and sorting all the items,
+     * keeps only {@code count} smallest ones in a bounded heap: O(n log k) time and O(k) memory.
+     * Equal items are emitted in order of arrival, as by {@link Observable#sorted(Comparator)}.
+     */
+    public static <T> ObservableTransformer<T, T> sortedTopK(Comparator<? super T> comparator, long count) {
+        if (count >= maxTopKCount) {
+            return source -> source.sorted(comparator).take(count);
+        }
+        return source -> source
+                .collect(() -> new BoundedHeap<T>(comparator, (int)count), BoundedHeap::add)
+                .flattenAsObservable(BoundedHeap::toSortedList);
+    }
+
     public static <T> ObservableTransformer<T, T> applyLimit(HasPagination pagination) {
         return source -> Optional
                 .ofNullable(pagination.limit())
@@ -81,7 +155,7 @@ public class Queries {
     public static <K, S, T> ObservableTransformer<S, T> applyQuery(QueryInfo<K, S, T> query) {
         return source -> source
                 .compose(applyFilter(query))
-                .compose(applySorting(query))
+                .compose(applySorting(toComparator(query), query))
                 .compose(applyMapping(query))
                 .compose(applyPagination(query));
     }
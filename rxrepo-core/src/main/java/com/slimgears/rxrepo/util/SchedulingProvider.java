@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.util;
 
 import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 
 import java.util.concurrent.Callable;
 
@@ -12,4 +13,25 @@ public interface SchedulingProvider {
         this.<Void>scope(() -> { runnable.run(); return null; });
     }
 
+    /**
+     * Scheduling provider, running everything on the calling thread (e.g. operations of thread-bound transaction)
+     */
+    static SchedulingProvider immediate() {
+        return new SchedulingProvider() {
+            @Override
+            public Scheduler scheduler() {
+                return Schedulers.from(Runnable::run);
+            }
+
+            @Override
+            public <T> T scope(Callable<T> callable) {
+                try {
+                    return callable.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
 }
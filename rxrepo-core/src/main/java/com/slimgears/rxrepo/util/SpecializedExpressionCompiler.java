@@ -0,0 +1,209 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ExpressionVisitor;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.provider.QueryShape;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Alternative backend for {@link Expressions#compile(ObjectExpression)} (used by
+ * {@link Expressions#compileSpecialized(ObjectExpression)}).
+ * Expression tree is first translated into a template, cached per {@link QueryShape} of expression, so expressions
+ * differing only by constant values share the template. Binding the template to constants produces evaluation function, in which:
+ * <ul>
+ *     <li>property of the argument is read by direct getter call, without {@link Optional} chain</li>
+ *     <li>comparison to a constant is done on primitive values, when constant is {@link Integer}, {@link Long} or {@link Double}</li>
+ *     <li>equality to a constant skips evaluation of the constant operand</li>
+ * </ul>
+ * All other operations are delegated to the same reducers, as used by default backend.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+class SpecializedExpressionCompiler {
+    private final static int maxCachedTemplates = 1000;
+    private final static Cache<Object, Optional<Node>> templateCache = CacheBuilder.newBuilder()
+            .maximumSize(maxCachedTemplates)
+            .build();
+
+    interface Template {
+        Function bind(Object[] args);
+    }
+
+    private static class Node {
+        private final Template template;
+        private final int constantIndex;
+        private final boolean isArgument;
+
+        private Node(Template template, int constantIndex, boolean isArgument) {
+            this.template = template;
+            this.constantIndex = constantIndex;
+            this.isArgument = isArgument;
+        }
+
+        private static Node of(Template template) {
+            return new Node(template, -1, false);
+        }
+
+        private static Node ofConstant(int index) {
+            return new Node(args -> Expressions.constant(args[index]), index, false);
+        }
+
+        private static Node ofArgument() {
+            return new Node(args -> Function.identity(), -1, true);
+        }
+
+        private boolean isConstant() {
+            return constantIndex >= 0;
+        }
+    }
+
+    /**
+     * Compiles expression, or returns {@link Optional#empty()} if expression contains nodes, not supported
+     * by specialized compiler (e.g. collection operations).
+     */
+    static <S, T> Optional<Function<S, T>> tryCompile(ObjectExpression<S, T> expression) {
+        QueryShape shape = QueryShape.of(expression);
+        try {
+            return templateCache
+                    .get(shape.key(), () -> tryCreateTemplate(expression))
+                    .map(node -> (Function<S, T>)node.template.bind(shape.args()));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Optional<Node> tryCreateTemplate(ObjectExpression<?, ?> expression) {
+        try {
+            return Optional.of(new TemplateVisitor().visit(expression, new AtomicInteger()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static class TemplateVisitor extends ExpressionVisitor<AtomicInteger, Node> {
+        @Override
+        protected Node reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Node first, Node second) {
+            switch (type.operationType()) {
+                case Property:
+                case Composition:
+                    return composition(first, second);
+                default:
+                    break;
+            }
+            switch (type) {
+                case Equals:
+                    return first.isConstant() ? equalsConstant(second, first) : second.isConstant() ? equalsConstant(first, second) : generic(type, first, second);
+                case GreaterThan:
+                    return second.isConstant() ? compareToConstant(first, second, r -> r > 0) : first.isConstant() ? compareToConstant(second, first, r -> r < 0) : generic(type, first, second);
+                case LessThan:
+                    return second.isConstant() ? compareToConstant(first, second, r -> r < 0) : first.isConstant() ? compareToConstant(second, first, r -> r > 0) : generic(type, first, second);
+                default:
+                    return generic(type, first, second);
+            }
+        }
+
+        @Override
+        protected Node reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Node first) {
+            return generic(type, first);
+        }
+
+        @Override
+        protected <T, V> Node visitProperty(PropertyMeta<T, V> propertyMeta, AtomicInteger constantCounter) {
+            Class<?> declaringClass = propertyMeta.declaringType().asClass();
+            Function getter = target -> declaringClass.isInstance(target) ? propertyMeta.getValue((T)target) : null;
+            return Node.of(args -> getter);
+        }
+
+        @Override
+        protected <V> Node visitConstant(Expression.Type type, V value, AtomicInteger constantCounter) {
+            return Node.ofConstant(constantCounter.getAndIncrement());
+        }
+
+        @Override
+        protected <T> Node visitArgument(TypeToken<T> argType, AtomicInteger constantCounter) {
+            return Node.ofArgument();
+        }
+    }
+
+    private static Node generic(Expression.Type type, Node... nodes) {
+        return Node.of(args -> {
+            Function[] functions = new Function[nodes.length];
+            for (int i = 0; i < nodes.length; ++i) {
+                functions[i] = nodes[i].template.bind(args);
+            }
+            return Expressions.reduce(type, functions);
+        });
+    }
+
+    private static Node composition(Node source, Node target) {
+        if (source.isArgument) {
+            return target;
+        }
+        return Node.of(args -> {
+            Function sourceFunc = source.template.bind(args);
+            Function targetFunc = target.template.bind(args);
+            return obj -> targetFunc.apply(sourceFunc.apply(obj));
+        });
+    }
+
+    private static Node equalsConstant(Node operand, Node constant) {
+        return Node.of(args -> {
+            Function operandFunc = operand.template.bind(args);
+            Object value = args[constant.constantIndex];
+            return value != null
+                    ? (Function)obj -> value.equals(operandFunc.apply(obj))
+                    : (Function)obj -> operandFunc.apply(obj) == null;
+        });
+    }
+
+    /**
+     * @param test Applied to the result of {@code operand.compareTo(constant)}
+     */
+    private static Node compareToConstant(Node operand, Node constant, IntPredicate test) {
+        return Node.of(args -> {
+            Function operandFunc = operand.template.bind(args);
+            Object value = args[constant.constantIndex];
+            if (value == null) {
+                return obj -> false;
+            }
+            Comparable comparable = (Comparable)value;
+            Function<Object, Boolean> genericComparison = obj -> obj != null && test.test(((Comparable)obj).compareTo(comparable));
+            if (value instanceof Integer) {
+                int intValue = (Integer)value;
+                return obj -> {
+                    Object operandValue = operandFunc.apply(obj);
+                    return operandValue instanceof Integer
+                            ? test.test(Integer.compare((Integer)operandValue, intValue))
+                            : genericComparison.apply(operandValue);
+                };
+            } else if (value instanceof Long) {
+                long longValue = (Long)value;
+                return obj -> {
+                    Object operandValue = operandFunc.apply(obj);
+                    return operandValue instanceof Long
+                            ? test.test(Long.compare((Long)operandValue, longValue))
+                            : genericComparison.apply(operandValue);
+                };
+            } else if (value instanceof Double) {
+                double doubleValue = (Double)value;
+                return obj -> {
+                    Object operandValue = operandFunc.apply(obj);
+                    return operandValue instanceof Double
+                            ? test.test(Double.compare((Double)operandValue, doubleValue))
+                            : genericComparison.apply(operandValue);
+                };
+            }
+            return obj -> genericComparison.apply(operandFunc.apply(obj));
+        });
+    }
+}
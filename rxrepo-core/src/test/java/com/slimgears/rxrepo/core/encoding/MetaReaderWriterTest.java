@@ -3,7 +3,9 @@ package com.slimgears.rxrepo.core.encoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.base.Strings;
 import com.slimgears.rxrepo.encoding.*;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
 import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
 import com.slimgears.rxrepo.encoding.codecs.MetaDocumentCodec;
 import com.slimgears.rxrepo.encoding.codecs.StandardCodecModule;
@@ -12,6 +14,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 public class MetaReaderWriterTest {
     @Test
@@ -43,4 +46,69 @@ public class MetaReaderWriterTest {
             Assert.assertEquals(doc.toString(), doc2.toString());
         }
     }
+
+    @Test
+    public void testWriteToBinaryAndRead() {
+        MetaCodecProvider codecProvider = MetaCodecs.builder()
+                .add(new StandardCodecModule())
+                .add(new MetaDocumentCodec.Provider())
+                .build();
+        MetaCodec<MetaDocument> codec = codecProvider.resolve(MetaDocument.class);
+        MetaContext context = MetaContexts.create(codecProvider);
+        MetaDocument doc = MetaDocuments.create(context)
+                .set("id", 1)
+                .set("name", "Document \u00e91")
+                .set("value", -1234567890123L)
+                .set("ratio", 0.5)
+                .set("flag", true)
+                .set("nestedDoc", MetaDocument.create()
+                        .set("nestedId", 2)
+                        .set("nestedName", "Document 1.2"))
+                .set("otherNestedDoc", MetaDocument.create()
+                        .set("nestedId", 3)
+                        .set("nestedName", "Document 1.3"));
+        BinaryAdapter.FieldDictionary dictionary = BinaryAdapter.FieldDictionary.of("id", "name", "value");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        codec.encode(context.ofWriter(BinaryAdapter.writer(buffer, dictionary)), doc);
+        buffer.flip();
+
+        MetaDocument doc2 = codec.decode(context.ofReader(BinaryAdapter.reader(buffer.duplicate(), dictionary)));
+        Assert.assertEquals(doc.toString(), doc2.toString());
+
+        MetaReader reader = BinaryAdapter.reader(buffer.duplicate(), dictionary);
+        reader.readBeginObject();
+        while (!reader.isAt(MetaElementType.EndObject)) {
+            reader.readName();
+            reader.skipValue();
+        }
+        reader.readEndObject();
+        Assert.assertTrue(reader.isFinished());
+    }
+
+    @Test
+    public void testWriteToGrowingBinaryWriterAndRead() {
+        MetaCodecProvider codecProvider = MetaCodecs.builder()
+                .add(new StandardCodecModule())
+                .add(new MetaDocumentCodec.Provider())
+                .build();
+        MetaCodec<MetaDocument> codec = codecProvider.resolve(MetaDocument.class);
+        MetaContext context = MetaContexts.create(codecProvider);
+        MetaDocument doc = MetaDocuments.create(context)
+                .set("id", 1)
+                .set("name", Strings.repeat("Document 1 ", 100));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        try {
+            codec.encode(context.ofWriter(BinaryAdapter.writer(buffer)), doc);
+            Assert.fail("Expected MetaCodecException");
+        } catch (MetaCodecException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Buffer overflow"));
+        }
+
+        BinaryAdapter.Writer writer = BinaryAdapter.writer();
+        codec.encode(context.ofWriter(writer), doc);
+        MetaDocument doc2 = codec.decode(context.ofReader(BinaryAdapter.reader(writer.toByteBuffer())));
+        Assert.assertEquals(doc.toString(), doc2.toString());
+    }
 }
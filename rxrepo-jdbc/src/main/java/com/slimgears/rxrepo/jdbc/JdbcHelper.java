@@ -7,6 +7,8 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -45,6 +47,9 @@ public class JdbcHelper {
         registerType(Types.CHAR, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.BLOB, PreparedStatement::setBytes, ResultSet::getBytes, byte[].class);
         registerType(Types.DATE, PreparedStatement::setDate, ResultSet::getDate, Date.class);
+        registerType(Types.TIMESTAMP, PreparedStatement::setTimestamp, ResultSet::getTimestamp, Timestamp.class);
+        registerType(Types.BOOLEAN, PreparedStatement::setBoolean, ResultSet::getBoolean, Boolean.class, boolean.class);
+        registerType(Types.BIT, PreparedStatement::setBoolean, ResultSet::getBoolean);
     }
 
     @SafeVarargs
@@ -72,9 +77,13 @@ public class JdbcHelper {
     }
 
     @SuppressWarnings("unchecked")
-    private static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
+    static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
         for (int i = 0; i < params.length; ++i) {
-            Object param = Optional.ofNullable(params[i]).orElse("NULL");
+            Object param = params[i];
+            if (param == null) {
+                preparedStatement.setObject(i + 1, null);
+                continue;
+            }
             Class paramClass = param.getClass();
             ParamSetter<Object> setter = Optional
                     .ofNullable(paramSettersByClass.get(paramClass))
@@ -115,6 +124,17 @@ public class JdbcHelper {
         }
     }
 
+    public static Object readColumnValue(ResultSet resultSet, int columnType, int columnIndex) throws SQLException {
+        ColumnGetter<?> getter = columnGettersByType.get(columnType);
+        Object value = getter != null ? getter.getValue(resultSet, columnIndex) : resultSet.getObject(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    public static boolean isIntegrityConstraintViolation(SQLException exception) {
+        return exception instanceof SQLIntegrityConstraintViolationException ||
+                Optional.ofNullable(exception.getSQLState()).filter(state -> state.startsWith("23")).isPresent();
+    }
+
     @SuppressWarnings("unchecked")
     public static <T> T getColumnValue(ResultSet resultSet, int columnType, int columnIndex) throws SQLException {
         return (T)Optional.ofNullable(columnGettersByType.get(columnType))
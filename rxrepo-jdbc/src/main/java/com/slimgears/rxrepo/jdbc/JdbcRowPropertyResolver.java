@@ -0,0 +1,107 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.util.PropertyResolver;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+class JdbcRowPropertyResolver implements PropertyResolver {
+    private final Columns columns;
+    private final Object[] values;
+    private final String prefix;
+
+    static class Columns {
+        private final ImmutableList<String> names;
+        private final int[] types;
+        private final Map<String, Integer> indexByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        private Columns(ResultSetMetaData metaData) throws SQLException {
+            ImmutableList.Builder<String> namesBuilder = ImmutableList.builder();
+            this.types = new int[metaData.getColumnCount()];
+            for (int i = 0; i < types.length; ++i) {
+                String name = metaData.getColumnLabel(i + 1);
+                namesBuilder.add(name);
+                types[i] = metaData.getColumnType(i + 1);
+                indexByName.put(name, i);
+            }
+            this.names = namesBuilder.build();
+        }
+
+        static Columns of(ResultSet resultSet) throws SQLException {
+            return new Columns(resultSet.getMetaData());
+        }
+    }
+
+    private JdbcRowPropertyResolver(Columns columns, Object[] values, String prefix) {
+        this.columns = columns;
+        this.values = values;
+        this.prefix = prefix;
+    }
+
+    static PropertyResolver read(Columns columns, ResultSet resultSet) throws SQLException {
+        Object[] values = new Object[columns.types.length];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = JdbcHelper.readColumnValue(resultSet, columns.types[i], i + 1);
+        }
+        return new JdbcRowPropertyResolver(columns, values, "");
+    }
+
+    @Override
+    public Iterable<String> propertyNames() {
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        IntStream.range(0, values.length)
+                .filter(i -> values[i] != null)
+                .mapToObj(columns.names::get)
+                .filter(this::hasPrefix)
+                .map(name -> name.substring(prefix.length()))
+                .map(name -> name.contains(".") ? name.substring(0, name.indexOf('.')) : name)
+                .forEach(names::add);
+        return names;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public Object getProperty(String name, Class<?> type) {
+        String fullName = prefix + name;
+        Integer index = columns.indexByName.get(fullName);
+        if (index != null) {
+            Object value = values[index];
+            return (type.isEnum() && value != null && !type.isInstance(value))
+                    ? Enum.valueOf((Class)type, value.toString())
+                    : value;
+        }
+        String nestedPrefix = fullName + ".";
+        return IntStream.range(0, values.length)
+                .filter(i -> values[i] != null)
+                .mapToObj(columns.names::get)
+                .anyMatch(n -> n.regionMatches(true, 0, nestedPrefix, 0, nestedPrefix.length()))
+                ? new JdbcRowPropertyResolver(columns, values, nestedPrefix)
+                : null;
+    }
+
+    private boolean hasPrefix(String name) {
+        return name.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JdbcRowPropertyResolver &&
+                Objects.equals(prefix, ((JdbcRowPropertyResolver)obj).prefix) &&
+                Objects.equals(columns.names, ((JdbcRowPropertyResolver)obj).columns.names) &&
+                Arrays.equals(values, ((JdbcRowPropertyResolver)obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefix, columns.names, Arrays.hashCode(values));
+    }
+}
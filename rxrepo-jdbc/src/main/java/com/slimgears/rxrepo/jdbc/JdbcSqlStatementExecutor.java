@@ -7,46 +7,343 @@ import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JdbcSqlStatementExecutor implements SqlStatementExecutor {
-    private final Connection connection;
+    private final static Logger log = LoggerFactory.getLogger(JdbcSqlStatementExecutor.class);
+    private final static AtomicLong operationCounter = new AtomicLong();
+    public final static int defaultFetchSize = 1000;
+    public final static int defaultBatchSize = 500;
+    private final DataSource dataSource;
+    private final int fetchSize;
+    private final int batchSize;
+    private final Connection transactionConnection;
 
-    public JdbcSqlStatementExecutor(Connection connection) {
-        this.connection = connection;
+    interface StatementFunction<T> {
+        T apply(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Connection of the current operation: either borrowed from the data source (and returned on close),
+     * or connection of the transaction, which is kept open until the transaction completes
+     */
+    private class ConnectionLease implements AutoCloseable {
+        private final Connection connection;
+
+        private ConnectionLease() throws SQLException {
+            this.connection = transactionConnection != null ? transactionConnection : dataSource.getConnection();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (connection != transactionConnection) {
+                connection.close();
+            }
+        }
+    }
+
+    private static class QueryCursor implements AutoCloseable {
+        private final ConnectionLease lease;
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final JdbcRowPropertyResolver.Columns columns;
+        private final boolean restoreAutoCommit;
+
+        private QueryCursor(ConnectionLease lease, PreparedStatement statement, ResultSet resultSet, boolean restoreAutoCommit) throws SQLException {
+            this.lease = lease;
+            this.connection = lease.connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.restoreAutoCommit = restoreAutoCommit;
+            this.columns = JdbcRowPropertyResolver.Columns.of(resultSet);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try (ConnectionLease ignored = lease; Statement ignoredStatement = statement; ResultSet ignoredResultSet = resultSet) {
+                if (restoreAutoCommit) {
+                    connection.commit();
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    private JdbcSqlStatementExecutor(DataSource dataSource, int fetchSize, int batchSize, Connection transactionConnection) {
+        this.dataSource = dataSource;
+        this.fetchSize = fetchSize;
+        this.batchSize = batchSize;
+        this.transactionConnection = transactionConnection;
+    }
+
+    /**
+     * Creates executor, which borrows connection from the given {@link DataSource} per operation.
+     * The data source is expected to be pooled, as connections are returned (closed) as soon as operation completes.
+     */
+    public static JdbcSqlStatementExecutor create(DataSource dataSource) {
+        return create(dataSource, defaultFetchSize);
+    }
+
+    public static JdbcSqlStatementExecutor create(DataSource dataSource, int fetchSize) {
+        return create(dataSource, fetchSize, defaultBatchSize);
+    }
+
+    public static JdbcSqlStatementExecutor create(DataSource dataSource, int fetchSize, int batchSize) {
+        return new JdbcSqlStatementExecutor(dataSource, fetchSize, batchSize, null);
     }
 
     @Override
     public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
-        return Observable.create(emitter -> {
-            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
-            JdbcHelper.toStream(preparedStatement.executeQuery());
-        });
+        return Observable.using(
+                () -> openCursor(statement),
+                cursor -> Observable.<PropertyResolver>generate(emitter -> {
+                    if (cursor.resultSet.next()) {
+                        emitter.onNext(JdbcRowPropertyResolver.read(cursor.columns, cursor.resultSet));
+                    } else {
+                        emitter.onComplete();
+                    }
+                }),
+                QueryCursor::close);
     }
 
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
-        return notImplemented();
+        return Observable.defer(() -> {
+            try (ConnectionLease lease = new ConnectionLease();
+                 PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
+                         () -> lease.connection.prepareStatement(statement.statement(), Statement.RETURN_GENERATED_KEYS),
+                         statement.args())) {
+                logStatement("Executing command", statement);
+                boolean hasResultSet = preparedStatement.execute();
+                try (ResultSet resultSet = hasResultSet ? preparedStatement.getResultSet() : preparedStatement.getGeneratedKeys()) {
+                    if (resultSet == null) {
+                        return Observable.<PropertyResolver>empty();
+                    }
+                    JdbcRowPropertyResolver.Columns columns = JdbcRowPropertyResolver.Columns.of(resultSet);
+                    List<PropertyResolver> entries = new ArrayList<>();
+                    while (resultSet.next()) {
+                        entries.add(JdbcRowPropertyResolver.read(columns, resultSet));
+                    }
+                    return Observable.fromIterable(entries);
+                }
+            } catch (SQLException e) {
+                throw toRuntimeException(statement, e);
+            }
+        });
     }
 
     @Override
     public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
-        return notImplemented();
+        return Single.fromCallable(() -> execute(statement, PreparedStatement::executeUpdate));
     }
 
     @Override
     public Completable executeCommand(SqlStatement statement) {
-        return notImplemented();
+        return Completable.fromCallable(() -> execute(statement, PreparedStatement::execute));
+    }
+
+    /**
+     * Executes statements within a single transaction, sending consecutive statements of the same text
+     * as JDBC batches of up to {@code batchSize} rows. When a batch fails on integrity constraint violation
+     * (e.g. duplicate key), it is rolled back and replayed row by row, so that non-conflicting rows are
+     * still committed, and {@link ConcurrentModificationException} is raised for the conflicting ones.
+     * Within transaction, the batch is bounded by savepoint instead, and is committed with the transaction.
+     */
+    @Override
+    public Completable executeCommandBatch(Iterable<SqlStatement> statements) {
+        return Completable.fromAction(() -> {
+            try (ConnectionLease lease = new ConnectionLease()) {
+                Connection connection = lease.connection;
+                if (transactionConnection != null) {
+                    Savepoint savepoint = connection.setSavepoint();
+                    try {
+                        int conflicts = executeChunks(connection, statements);
+                        connection.releaseSavepoint(savepoint);
+                        if (conflicts > 0) {
+                            throw new ConcurrentModificationException(conflicts + " row(s) of the batch violated integrity constraints");
+                        }
+                    } catch (SQLException e) {
+                        connection.rollback(savepoint);
+                        throw e;
+                    }
+                    return;
+                }
+
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    int conflicts = executeChunks(connection, statements);
+                    connection.commit();
+                    if (conflicts > 0) {
+                        throw new ConcurrentModificationException(conflicts + " row(s) of the batch violated integrity constraints");
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Executes {@code body} against executor, bound to a single connection with auto-commit disabled.
+     * The transaction is committed when {@code body} completes, and rolled back when it fails or is disposed.
+     * As JDBC connections are not thread-safe, statements of {@code body} should be executed sequentially.
+     */
+    @Override
+    public Completable executeTransaction(Function<SqlStatementExecutor, Completable> body) {
+        return Completable.using(
+                this::beginTransaction,
+                connection -> Completable
+                        .defer(() -> body.apply(new JdbcSqlStatementExecutor(dataSource, fetchSize, batchSize, connection)))
+                        .doOnComplete(connection::commit)
+                        .doOnError(e -> connection.rollback()),
+                this::endTransaction);
     }
 
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
-        return notImplemented();
+        return Observable.error(new UnsupportedOperationException("Live queries are not supported by JDBC executor"));
+    }
+
+    private <T> T execute(SqlStatement statement, StatementFunction<T> function) {
+        try (ConnectionLease lease = new ConnectionLease();
+             PreparedStatement preparedStatement = JdbcHelper.prepareStatement(lease.connection, statement)) {
+            logStatement("Executing command", statement);
+            return function.apply(preparedStatement);
+        } catch (SQLException e) {
+            throw toRuntimeException(statement, e);
+        }
+    }
+
+    private Connection beginTransaction() throws SQLException {
+        if (transactionConnection != null) {
+            throw new IllegalStateException("Nested transactions are not supported");
+        }
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void endTransaction(Connection connection) throws SQLException {
+        try (Connection ignored = connection) {
+            // No-op if already committed, otherwise discards changes before auto-commit is restored
+            connection.rollback();
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private int executeChunks(Connection connection, Iterable<SqlStatement> statements) throws SQLException {
+        List<SqlStatement> chunk = new ArrayList<>(batchSize);
+        int conflicts = 0;
+        for (SqlStatement statement : statements) {
+            if (!chunk.isEmpty() && (chunk.size() >= batchSize || !chunk.get(0).statement().equals(statement.statement()))) {
+                conflicts += executeChunk(connection, chunk);
+                chunk.clear();
+            }
+            chunk.add(statement);
+        }
+        if (!chunk.isEmpty()) {
+            conflicts += executeChunk(connection, chunk);
+        }
+        return conflicts;
+    }
+
+    private int executeChunk(Connection connection, List<SqlStatement> chunk) throws SQLException {
+        SqlStatement first = chunk.get(0);
+        Savepoint savepoint = connection.setSavepoint();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(first.statement())) {
+            logStatement("Executing batch of " + chunk.size(), first);
+            for (SqlStatement statement : chunk) {
+                JdbcHelper.setParams(preparedStatement, statement.args());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            connection.releaseSavepoint(savepoint);
+            return 0;
+        } catch (SQLException e) {
+            if (!JdbcHelper.isIntegrityConstraintViolation(e)) {
+                throw e;
+            }
+            log.debug("Batch failed with integrity constraint violation, falling back to row by row execution", e);
+            connection.rollback(savepoint);
+            return executeRowByRow(connection, chunk);
+        }
+    }
+
+    private int executeRowByRow(Connection connection, List<SqlStatement> chunk) throws SQLException {
+        int conflicts = 0;
+        for (SqlStatement statement : chunk) {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement preparedStatement = connection.prepareStatement(statement.statement())) {
+                JdbcHelper.setParams(preparedStatement, statement.args());
+                preparedStatement.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                if (!JdbcHelper.isIntegrityConstraintViolation(e)) {
+                    throw e;
+                }
+                log.debug("Error when executing {}", statement.statement(), e);
+                connection.rollback(savepoint);
+                ++conflicts;
+            }
+        }
+        return conflicts;
+    }
+
+    private QueryCursor openCursor(SqlStatement statement) throws SQLException {
+        ConnectionLease lease = new ConnectionLease();
+        Connection connection = lease.connection;
+        try {
+            // Some drivers (e.g. PostgreSQL) only honour fetch size for cursors opened within a transaction
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            logStatement("Querying", statement);
+            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
+                    () -> connection.prepareStatement(statement.statement(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY),
+                    statement.args());
+            preparedStatement.setFetchSize(fetchSize);
+            return new QueryCursor(lease, preparedStatement, preparedStatement.executeQuery(), autoCommit);
+        } catch (Throwable e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    private RuntimeException toRuntimeException(SqlStatement statement, SQLException e) {
+        log.debug("Error when executing {}", statement.statement(), e);
+        return JdbcHelper.isIntegrityConstraintViolation(e)
+                ? new ConcurrentModificationException(e.getMessage(), e)
+                : new RuntimeException(e);
     }
 
-    private static <T> T notImplemented() {
-        throw new UnsupportedOperationException("Not implemented yet");
+    private void logStatement(String title, SqlStatement statement) {
+        log.trace("[{}] {}: {}", operationCounter.incrementAndGet(), title, statement.statement());
     }
 }
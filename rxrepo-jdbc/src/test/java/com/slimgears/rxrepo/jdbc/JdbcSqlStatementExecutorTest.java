@@ -0,0 +1,179 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.Completable;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JdbcSqlStatementExecutorTest {
+    private JdbcConnectionPool connectionPool;
+    private JdbcSqlStatementExecutor executor;
+
+    @Before
+    public void setUp() {
+        connectionPool = JdbcConnectionPool.create("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        executor = JdbcSqlStatementExecutor.create(connectionPool, 10, 16);
+        executor.executeCommand(SqlStatement.create("create table Product (id int primary key, name varchar(100), price int)"))
+                .blockingAwait();
+    }
+
+    @After
+    public void tearDown() {
+        executor.executeCommand(SqlStatement.create("drop all objects")).blockingAwait();
+        connectionPool.dispose();
+    }
+
+    @Test
+    public void testInsertAndQuery() {
+        for (int i = 0; i < 100; ++i) {
+            int count = executor
+                    .executeCommandReturnCount(SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", i, "Product " + i, i % 2 == 0 ? 100 + i : null))
+                    .blockingGet();
+            Assert.assertEquals(1, count);
+        }
+
+        List<PropertyResolver> results = executor
+                .executeQuery(SqlStatement.create("select id, name, price from Product where id >= ? order by id", 50))
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(50, results.size());
+        Assert.assertEquals(50, results.get(0).getProperty("id", Integer.class));
+        Assert.assertEquals("Product 50", results.get(0).getProperty("name", String.class));
+        Assert.assertEquals(150, results.get(0).getProperty("price", Integer.class));
+        Assert.assertNull(results.get(1).getProperty("price", Integer.class));
+
+        Assert.assertEquals(Integer.valueOf(100), executor
+                .executeCommandReturnCount(SqlStatement.create("update Product set price = ?", 1))
+                .blockingGet());
+    }
+
+    @Test
+    public void testQueryIsStreamedAndClosedOnDispose() {
+        for (int i = 0; i < 100; ++i) {
+            executor.executeCommand(SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", i, "Product " + i, i))
+                    .blockingAwait();
+        }
+
+        AtomicInteger received = new AtomicInteger();
+        executor.executeQuery(SqlStatement.create("select * from Product"))
+                .doOnNext(pr -> received.incrementAndGet())
+                .take(5)
+                .test()
+                .assertValueCount(5)
+                .assertComplete();
+
+        Assert.assertEquals(5, received.get());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    @Test
+    public void testDuplicateKeyRaisesConcurrentModificationException() {
+        SqlStatement insert = SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", 1, "Product 1", 100);
+        executor.executeCommand(insert).blockingAwait();
+        executor.executeCommand(insert)
+                .test()
+                .assertError(ConcurrentModificationException.class);
+    }
+
+    @Test
+    public void testBatchInsertWithDuplicateKeyFallsBackToRowByRow() {
+        executor.executeCommand(SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", 7, "Product 7", 7))
+                .blockingAwait();
+
+        List<SqlStatement> statements = IntStream.range(0, 100)
+                .mapToObj(i -> SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", i, "Product " + i, i))
+                .collect(Collectors.toList());
+
+        executor.executeCommandBatch(statements)
+                .test()
+                .assertError(ConcurrentModificationException.class);
+
+        Assert.assertEquals(100L, executor.executeQuery(SqlStatement.create("select id from Product"))
+                .count()
+                .blockingGet()
+                .longValue());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    @Test
+    public void testTransactionCommitsStatementsAndBatches() {
+        executor.executeTransaction(tx -> tx
+                .executeCommand(SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", 100, "Product 100", 100))
+                .andThen(tx.executeCommandBatch(insertStatements(0, 10))))
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertNoErrors()
+                .assertComplete();
+
+        Assert.assertEquals(11L, productCount());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    @Test
+    public void testTransactionRollsBackBatchesOnError() {
+        executor.executeTransaction(tx -> tx
+                .executeCommandBatch(insertStatements(0, 10))
+                .andThen(Completable.error(new IllegalStateException("Test error"))))
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertError(IllegalStateException.class);
+
+        Assert.assertEquals(0L, productCount());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    @Test
+    public void testBatchConflictWithinTransactionIsBoundedBySavepoint() {
+        AtomicReference<Throwable> batchError = new AtomicReference<>();
+        executor.executeTransaction(tx -> tx
+                .executeCommand(SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", 7, "Product 7", 7))
+                .andThen(tx.executeCommandBatch(insertStatements(0, 100))
+                        .doOnError(batchError::set)
+                        .onErrorComplete()))
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertNoErrors()
+                .assertComplete();
+
+        Assert.assertTrue(batchError.get() instanceof ConcurrentModificationException);
+
+        // Conflicting row is replayed within the savepoint, non-conflicting ones are committed with transaction
+        Assert.assertEquals(100L, productCount());
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    @Test
+    public void testNestedTransactionIsRejected() {
+        executor.executeTransaction(tx -> tx.executeTransaction(nested -> Completable.complete()))
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertError(IllegalStateException.class);
+
+        Assert.assertEquals(0, connectionPool.getActiveConnections());
+    }
+
+    private long productCount() {
+        return executor.executeQuery(SqlStatement.create("select id from Product"))
+                .count()
+                .blockingGet();
+    }
+
+    private static List<SqlStatement> insertStatements(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> SqlStatement.create("insert into Product (id, name, price) values (?, ?, ?)", i, "Product " + i, i))
+                .collect(Collectors.toList());
+    }
+}
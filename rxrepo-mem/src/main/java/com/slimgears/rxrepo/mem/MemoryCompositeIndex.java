@@ -0,0 +1,143 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.util.CompositeIndexInfo;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * Index over tuple of property values. Hash variant serves equality to all the properties, while
+ * sorted variant (tuples are compared lexicographically) also serves equality to any leading subset of them.
+ */
+class MemoryCompositeIndex<K, S> {
+    private final ImmutableList<PropertyMeta<S, ?>> properties;
+    private final ImmutableList<Class<?>> valueClasses;
+    private final ConcurrentMap<List<Object>, Set<K>> map;
+    private final boolean sorted;
+
+    private MemoryCompositeIndex(ImmutableList<PropertyMeta<S, ?>> properties, boolean sorted) {
+        this.properties = properties;
+        this.valueClasses = properties.stream()
+                .map(p -> Primitives.wrap(p.type().getRawType()))
+                .collect(ImmutableList.toImmutableList());
+        this.sorted = sorted;
+        this.map = sorted
+                ? new ConcurrentSkipListMap<>(MemoryCompositeIndex::compareTuples)
+                : new ConcurrentHashMap<>();
+    }
+
+    static <K, S> MemoryCompositeIndex<K, S> create(CompositeIndexInfo<S> index) {
+        boolean sortable = index.properties().stream().allMatch(MemoryIndex::isSortable);
+        return new MemoryCompositeIndex<>(index.properties(), index.ordered() && sortable);
+    }
+
+    ImmutableList<PropertyMeta<S, ?>> properties() {
+        return properties;
+    }
+
+    void update(K key, S oldObject, S newObject) {
+        if (oldObject == newObject) {
+            return;
+        }
+        List<Object> oldTuple = oldObject != null ? tupleOf(oldObject) : null;
+        List<Object> newTuple = newObject != null ? tupleOf(newObject) : null;
+        if (Objects.equals(oldTuple, newTuple)) {
+            return;
+        }
+        if (oldTuple != null) {
+            remove(key, oldTuple);
+        }
+        if (newTuple != null) {
+            add(key, newTuple);
+        }
+    }
+
+    void clear() {
+        map.clear();
+    }
+
+    /**
+     * Number of leading properties, which values are given, if the index can serve the lookup by them, 0 otherwise
+     */
+    int coverage(Map<PropertyMeta<S, ?>, Object> values) {
+        int count = 0;
+        while (count < properties.size() && valueClasses.get(count).isInstance(values.get(properties.get(count)))) {
+            ++count;
+        }
+        return sorted || count == properties.size() ? count : 0;
+    }
+
+    Optional<Collection<K>> lookupEqual(Map<PropertyMeta<S, ?>, Object> values) {
+        int count = coverage(values);
+        if (count == 0) {
+            return Optional.empty();
+        }
+        List<Object> prefix = properties.subList(0, count).stream().map(values::get).collect(Collectors.toList());
+        if (count == properties.size()) {
+            return Optional.of(Optional.<Collection<K>>ofNullable(map.get(prefix)).orElseGet(Collections::emptySet));
+        }
+        // Tuples, starting with the prefix, follow the prefix itself in lexicographic order
+        List<K> keys = new ArrayList<>();
+        for (Map.Entry<List<Object>, Set<K>> entry : ((NavigableMap<List<Object>, Set<K>>)map).tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().subList(0, count).equals(prefix)) {
+                break;
+            }
+            keys.addAll(entry.getValue());
+        }
+        return Optional.of(keys);
+    }
+
+    private List<Object> tupleOf(S object) {
+        return properties.stream()
+                .map(p -> (Object)p.getValue(object))
+                .collect(Collectors.toList());
+    }
+
+    private void add(K key, List<Object> tuple) {
+        while (true) {
+            Set<K> keys = map.computeIfAbsent(tuple, t -> ConcurrentHashMap.newKeySet());
+            synchronized (keys) {
+                if (map.get(tuple) == keys) {
+                    keys.add(key);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void remove(K key, List<Object> tuple) {
+        Set<K> keys = map.get(tuple);
+        if (keys == null) {
+            return;
+        }
+        synchronized (keys) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                map.remove(tuple, keys);
+            }
+        }
+    }
+
+    /**
+     * Lexicographic comparison, in which {@code null} precedes any value and a tuple precedes its extensions
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareTuples(List<Object> first, List<Object> second) {
+        int size = Math.min(first.size(), second.size());
+        for (int i = 0; i < size; ++i) {
+            Object a = first.get(i);
+            Object b = second.get(i);
+            int result = a == b ? 0 : a == null ? -1 : b == null ? 1 : ((Comparable<Object>)a).compareTo(b);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(first.size(), second.size());
+    }
+}
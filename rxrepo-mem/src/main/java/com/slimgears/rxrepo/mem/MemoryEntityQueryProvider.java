@@ -6,9 +6,11 @@ import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Streams;
@@ -31,15 +33,20 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     private final static Logger log = LoggerFactory.getLogger(MemoryEntityQueryProvider.class);
+    private final static int writeLockStripes = Runtime.getRuntime().availableProcessors() * 4;
     private final AtomicLong sequenceNumber;
     private final MetaClassWithKey<K, S> metaClass;
     private final MetaObjectResolver objectResolver;
+    private final ExpressionCompiler compiler;
     private final Map<K, ObjectReference<S>> objects = new ConcurrentHashMap<>();
-    private final Subject<Notification<S>> notificationSubject = PublishSubject.create();
+    private final Subject<Notification<S>> notificationSubject = PublishSubject.<Notification<S>>create().toSerialized();
+    private final Object[] writeLocks = IntStream.range(0, writeLockStripes).mapToObj(i -> new Object()).toArray();
     private final Lazy<List<PropertyMeta<S, ?>>> referenceProperties;
+    private final MemoryQueryPlanner<K, S> queryPlanner;
 
     private static class ObjectReference<S> {
         private final AtomicReference<S> reference = new AtomicReference<>();
@@ -66,10 +73,13 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     private MemoryEntityQueryProvider(MetaClassWithKey<K, S> metaClass,
                                       MetaObjectResolver objectResolver,
-                                      AtomicLong sequenceNumber) {
+                                      AtomicLong sequenceNumber,
+                                      ExpressionCompiler compiler) {
         this.sequenceNumber = sequenceNumber;
         this.metaClass = metaClass;
         this.objectResolver = objectResolver;
+        this.compiler = compiler;
+        this.queryPlanner = MemoryQueryPlanner.create(metaClass);
         this.referenceProperties = Lazy.of(() -> Streams
                 .fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
@@ -79,8 +89,9 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     static <K, S> MemoryEntityQueryProvider<K, S> create(
             MetaClassWithKey<K, S> metaClass,
             MetaObjectResolver objectResolver,
-            AtomicLong sequenceNumber) {
-        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber);
+            AtomicLong sequenceNumber,
+            ExpressionCompiler compiler) {
+        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber, compiler);
     }
 
     @Override
@@ -88,42 +99,113 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         return metaClass;
     }
 
+    ExpressionCompiler compiler() {
+        return compiler;
+    }
+
     @Override
     public Maybe<Supplier<S>> insertOrUpdate(K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
         return Maybe.defer(() -> {
-            synchronized (metaClass) {
-                long seqNum = sequenceNumber.incrementAndGet();
-                Supplier<ObjectReference<S>> referenceResolver = () -> objects.computeIfAbsent(key, k -> new ObjectReference<>(sequenceNumber));
-                S oldValue = referenceResolver.get().get();
-                return entityUpdater
-                        .apply(Optional.ofNullable(referenceResolver.get().get()).map(Maybe::just).orElseGet(Maybe::empty))
-                        .flatMap(e -> referenceResolver.get().compareAndSet(oldValue, e)
-                                ? (e != null ? Maybe.just(e): Maybe.empty())
-                                : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
-                        .doOnSuccess(e -> {
-                            if (!Objects.equals(oldValue, e)) {
-                                Notification<S> notification = Notification.ofModified(oldValue, e, seqNum);
-                                notificationSubject.onNext(notification);
-                                log.debug("Published notification: {}", notification);
-                            }
-                        })
-                        .map(e -> () -> e);
+            Object writeLock = writeLockOf(key);
+            Supplier<ObjectReference<S>> referenceResolver = () -> objects.computeIfAbsent(key, k -> new ObjectReference<>(sequenceNumber));
+            long seqNum;
+            S oldValue;
+            synchronized (writeLock) {
+                seqNum = sequenceNumber.incrementAndGet();
+                oldValue = referenceResolver.get().get();
             }
+            return entityUpdater
+                    .apply(Optional.ofNullable(oldValue).map(Maybe::just).orElseGet(Maybe::empty))
+                    .flatMap(e -> tryCommit(writeLock, key, referenceResolver, oldValue, e, seqNum)
+                            ? Maybe.just(e)
+                            : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
+                    .map(e -> () -> e);
         });
     }
 
+    private boolean tryCommit(Object writeLock, K key, Supplier<ObjectReference<S>> referenceResolver, S oldValue, S newValue, long seqNum) {
+        synchronized (writeLock) {
+            if (!referenceResolver.get().compareAndSet(oldValue, newValue)) {
+                return false;
+            }
+            if (!Objects.equals(oldValue, newValue)) {
+                queryPlanner.update(key, oldValue, newValue);
+                Notification<S> notification = Notification.ofModified(oldValue, newValue, seqNum);
+                notificationSubject.onNext(notification);
+                log.debug("Published notification: {}", notification);
+            }
+            return true;
+        }
+    }
+
+    private Object writeLockOf(K key) {
+        return writeLocks[writeStripeOf(key)];
+    }
+
+    private int writeStripeOf(K key) {
+        int hash = Objects.hashCode(key);
+        return Math.floorMod(hash ^ (hash >>> 16), writeLocks.length);
+    }
+
+    /**
+     * Runs action, while holding write locks of all given keys. Locks are acquired in the order of their stripes.
+     */
+    void withWriteLocks(Collection<K> keys, Runnable action) {
+        withWriteLocks(keys.stream().mapToInt(this::writeStripeOf).distinct().sorted().toArray(), 0, action);
+    }
+
+    private void withWriteLocks(int[] stripes, int index, Runnable action) {
+        if (index == stripes.length) {
+            action.run();
+            return;
+        }
+        synchronized (writeLocks[stripes[index]]) {
+            withWriteLocks(stripes, index + 1, action);
+        }
+    }
+
+    /**
+     * Applies change, committed by a transaction. Should be called while holding write lock of the key.
+     * @param newValue New value of the object, or {@code null} if the object is deleted
+     * @return Notification, to be published by {@link #publish(Notification)}, or empty if object is not modified
+     */
+    Optional<Notification<S>> apply(K key, S oldValue, S newValue, long seqNum) {
+        if (newValue == null) {
+            return Optional.ofNullable(objects.remove(key))
+                    .map(ObjectReference::get)
+                    .map(removed -> {
+                        queryPlanner.update(key, removed, null);
+                        return Notification.ofDeleted(removed, seqNum);
+                    });
+        }
+        objects.computeIfAbsent(key, k -> new ObjectReference<>(sequenceNumber)).compareAndSet(oldValue, newValue);
+        if (Objects.equals(oldValue, newValue)) {
+            return Optional.empty();
+        }
+        queryPlanner.update(key, oldValue, newValue);
+        return Optional.of(Notification.ofModified(oldValue, newValue, seqNum));
+    }
+
+    void publish(Notification<S> notification) {
+        notificationSubject.onNext(notification);
+        log.debug("Published notification: {}", notification);
+    }
+
     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
     @Override
     public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         log.trace("Querying {}", query);
-        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate());
-        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
-        return Observable.fromIterable(objects.values())
+        Predicate<S> predicate = compiler.compileRxPredicate(query.predicate());
+        java.util.function.Function<S, T> mapper = compiler.compile(query.mapping());
+        return Observable.defer(() -> Observable.fromIterable(candidatesOf(query.predicate())))
                 .flatMapMaybe(ref -> Maybe.fromCallable(ref::get)
                         .doOnSuccess(ob -> Expressions.sequenceNumber().set(ref.modificationSequenceNum.get()))
                         .filter(predicate)
                         .map(o -> Notification.ofCreated(o, ref.modificationSequenceNum.get())))
-                .compose(ob -> Optional.ofNullable(query.sorting()).map(this::toNotificationComparator).map(ob::sorted).orElse(ob))
+                .compose(ob -> Optional.ofNullable(query.sorting())
+                        .map(this::toNotificationComparator)
+                        .map(comparator -> ob.compose(Queries.applySorting(comparator, query)))
+                        .orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.skip()).map(ob::skip).orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.limit()).map(ob::take).orElse(ob))
                 .doOnNext(val -> log.trace("Object without references: {}", val))
@@ -206,7 +288,7 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         return notificationSubject
                 .doOnNext(n -> Expressions.sequenceNumber().set(n.sequenceNumber()))
                 .compose(src -> Optional.ofNullable(query.mapping())
-                        .map(Expressions::compile)
+                        .map(compiler::compile)
                         .map(m -> src.map(nn -> nn.map(m)))
                         .orElse((Observable<Notification<T>>)(Observable)src))
                 .doOnNext(n -> log.debug("Notification --> {}", n));
@@ -237,30 +319,50 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     @Override
     public Single<Integer> delete(DeleteInfo<K, S> delete) {
-        Predicate<S> predicate = Expressions.compileRxPredicate(delete.predicate());
+        Predicate<S> predicate = compiler.compileRxPredicate(delete.predicate());
         return Observable
-                .fromIterable(objects.values())
+                .defer(() -> Observable.fromIterable(candidatesOf(delete.predicate())))
                 .doOnSubscribe(d -> sequenceNumber.incrementAndGet())
-                .map(ObjectReference::get)
+                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get))
                 .filter(predicate)
                 .compose(ob -> Optional.ofNullable(delete.limit()).map(ob::take).orElse(ob))
                 .map(metaClass::keyOf)
-                .filter(key -> Optional
-                        .ofNullable(objects.remove(key))
-                        .map(ref -> Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get()))
-                        .map(n -> {
-                            notificationSubject.onNext(n);
-                            return true;
-                        })
-                        .orElse(false)
-                )
+                .filter(this::tryRemove)
                 .count()
                 .map(Long::intValue);
     }
 
+    private boolean tryRemove(K key) {
+        synchronized (writeLockOf(key)) {
+            return Optional
+                    .ofNullable(objects.remove(key))
+                    .map(ref -> {
+                        queryPlanner.update(key, ref.get(), null);
+                        return Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get());
+                    })
+                    .map(n -> {
+                        notificationSubject.onNext(n);
+                        return true;
+                    })
+                    .orElse(false);
+        }
+    }
+
     @Override
     public Completable drop() {
-        return Completable.fromAction(objects::clear);
+        return Completable.fromAction(() -> {
+            objects.clear();
+            queryPlanner.clear();
+        });
+    }
+
+    private Iterable<ObjectReference<S>> candidatesOf(ObjectExpression<S, Boolean> predicate) {
+        return queryPlanner.candidateKeys(predicate)
+                .<Iterable<ObjectReference<S>>>map(keys -> keys.stream()
+                        .map(objects::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()))
+                .orElseGet(objects::values);
     }
 
     @SuppressWarnings("unchecked")
@@ -297,6 +399,11 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         return Maybe.fromCallable(() -> objects.get(key)).map(ObjectReference::get);
     }
 
+    S current(K key) {
+        ObjectReference<S> reference = objects.get(key);
+        return reference != null ? reference.get() : null;
+    }
+
     @Override
     public void close() {
 
@@ -0,0 +1,176 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.primitives.Primitives;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+abstract class MemoryIndex<K, S, V> {
+    private final PropertyMeta<S, V> property;
+    private final Class<?> valueClass;
+    private final Set<K> nullKeys = ConcurrentHashMap.newKeySet();
+
+    private MemoryIndex(PropertyMeta<S, V> property) {
+        this.property = property;
+        this.valueClass = Primitives.wrap(property.type().getRawType());
+    }
+
+    static <K, S, V> MemoryIndex<K, S, V> hashIndex(PropertyMeta<S, V> property) {
+        return new HashIndex<>(property);
+    }
+
+    static <K, S, V> MemoryIndex<K, S, V> sortedIndex(PropertyMeta<S, V> property) {
+        return new SortedIndex<>(property);
+    }
+
+    static boolean isSortable(PropertyMeta<?, ?> property) {
+        return Comparable.class.isAssignableFrom(Primitives.wrap(property.type().getRawType()));
+    }
+
+    PropertyMeta<S, V> property() {
+        return property;
+    }
+
+    void update(K key, S oldObject, S newObject) {
+        if (oldObject == newObject) {
+            return;
+        }
+        V oldValue = oldObject != null ? property.getValue(oldObject) : null;
+        V newValue = newObject != null ? property.getValue(newObject) : null;
+        if (oldObject != null && newObject != null && Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        if (oldObject != null) {
+            remove(key, oldValue);
+        }
+        if (newObject != null) {
+            add(key, newValue);
+        }
+    }
+
+    void clear() {
+        nullKeys.clear();
+        map().clear();
+    }
+
+    Optional<Collection<K>> lookupNull() {
+        return Optional.of(nullKeys);
+    }
+
+    Optional<Collection<K>> lookupEqual(Object value) {
+        if (!isApplicable(value)) {
+            return Optional.empty();
+        }
+        return Optional.of(Optional.<Collection<K>>ofNullable(map().get(value)).orElseGet(Collections::emptySet));
+    }
+
+    Optional<Collection<K>> lookupIn(Collection<?> values) {
+        if (values == null || !values.stream().allMatch(this::isApplicable)) {
+            return Optional.empty();
+        }
+        Set<K> keys = new HashSet<>();
+        new HashSet<>(values).stream()
+                .map(map()::get)
+                .filter(Objects::nonNull)
+                .forEach(keys::addAll);
+        return Optional.of(keys);
+    }
+
+    Optional<Collection<K>> lookupRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        return Optional.empty();
+    }
+
+    boolean isApplicable(Object value) {
+        return valueClass.isInstance(value);
+    }
+
+    protected abstract ConcurrentMap<V, Set<K>> map();
+
+    private void add(K key, V value) {
+        if (value == null) {
+            nullKeys.add(key);
+            return;
+        }
+        ConcurrentMap<V, Set<K>> map = map();
+        while (true) {
+            Set<K> keys = map.computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet());
+            synchronized (keys) {
+                if (map.get(value) == keys) {
+                    keys.add(key);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void remove(K key, V value) {
+        if (value == null) {
+            nullKeys.remove(key);
+            return;
+        }
+        ConcurrentMap<V, Set<K>> map = map();
+        Set<K> keys = map.get(value);
+        if (keys == null) {
+            return;
+        }
+        synchronized (keys) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                map.remove(value, keys);
+            }
+        }
+    }
+
+    private static class HashIndex<K, S, V> extends MemoryIndex<K, S, V> {
+        private final ConcurrentMap<V, Set<K>> map = new ConcurrentHashMap<>();
+
+        private HashIndex(PropertyMeta<S, V> property) {
+            super(property);
+        }
+
+        @Override
+        protected ConcurrentMap<V, Set<K>> map() {
+            return map;
+        }
+    }
+
+    private static class SortedIndex<K, S, V> extends MemoryIndex<K, S, V> {
+        private final ConcurrentSkipListMap<V, Set<K>> map = new ConcurrentSkipListMap<>();
+
+        private SortedIndex(PropertyMeta<S, V> property) {
+            super(property);
+        }
+
+        @Override
+        protected ConcurrentMap<V, Set<K>> map() {
+            return map;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        Optional<Collection<K>> lookupRange(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            if ((from != null && !isApplicable(from)) || (to != null && !isApplicable(to))) {
+                return Optional.empty();
+            }
+            if (from != null && to != null) {
+                int cmp = ((Comparable<Object>)from).compareTo(to);
+                if (cmp > 0 || (cmp == 0 && !(fromInclusive && toInclusive))) {
+                    return Optional.of(Collections.emptyList());
+                }
+            }
+            NavigableMap<V, Set<K>> range = map;
+            if (from != null) {
+                range = range.tailMap((V)from, fromInclusive);
+            }
+            if (to != null) {
+                range = range.headMap((V)to, toInclusive);
+            }
+            List<K> keys = new ArrayList<>();
+            range.values().forEach(keys::addAll);
+            return Optional.of(keys);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.primitives.Primitives;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.util.CompositeIndexInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Optionals;
+import com.slimgears.util.stream.Streams;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+class MemoryQueryPlanner<K, S> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final Class<?> keyClass;
+    private final ImmutableListMultimap<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> indexes;
+    private final ImmutableList<MemoryCompositeIndex<K, S>> compositeIndexes;
+    private final Optional<MemorySearchIndex<K, S>> searchIndex;
+
+    private MemoryQueryPlanner(MetaClassWithKey<K, S> metaClass) {
+        this.metaClass = metaClass;
+        this.keyClass = Primitives.wrap(metaClass.keyProperty().type().getRawType());
+        this.indexes = createIndexes(metaClass);
+        this.compositeIndexes = CompositeIndexInfo.of(metaClass)
+                .stream()
+                .map(MemoryCompositeIndex::<K, S>create)
+                .collect(ImmutableList.toImmutableList());
+        this.searchIndex = MemorySearchIndex.create(metaClass);
+    }
+
+    static <K, S> MemoryQueryPlanner<K, S> create(MetaClassWithKey<K, S> metaClass) {
+        return new MemoryQueryPlanner<>(metaClass);
+    }
+
+    void update(K key, S oldObject, S newObject) {
+        indexes.values().forEach(index -> index.update(key, oldObject, newObject));
+        compositeIndexes.forEach(index -> index.update(key, oldObject, newObject));
+        searchIndex.ifPresent(index -> index.update(key, oldObject, newObject));
+    }
+
+    void clear() {
+        indexes.values().forEach(MemoryIndex::clear);
+        compositeIndexes.forEach(MemoryCompositeIndex::clear);
+        searchIndex.ifPresent(MemorySearchIndex::clear);
+    }
+
+    /**
+     * Returns keys of the objects, which may satisfy the predicate, or empty if the predicate
+     * cannot be served by indexes and full scan is required. Returned candidates still should be
+     * evaluated against the predicate.
+     */
+    Optional<Collection<K>> candidateKeys(ObjectExpression<S, Boolean> predicate) {
+        return predicate != null ? plan(predicate) : Optional.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Collection<K>> plan(ObjectExpression<S, ?> expression) {
+        expression = unwrap(expression);
+        switch (expression.type()) {
+            case And: {
+                Optional<Collection<K>> composite = planComposite(expression, 2);
+                if (composite.isPresent()) {
+                    return composite;
+                }
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                Optional<Collection<K>> left = plan(binary.left());
+                Optional<Collection<K>> right = plan(binary.right());
+                if (left.isPresent() && right.isPresent()) {
+                    return Optional.of(intersect(left.get(), right.get()));
+                }
+                return Optionals.or(() -> left, () -> right);
+            }
+            case Or: {
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                return plan(binary.left()).flatMap(left -> plan(binary.right()).map(right -> union(left, right)));
+            }
+            case Equals: {
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                Optional<Collection<K>> keys = Optionals.or(
+                        () -> planEquals(binary.left(), binary.right()),
+                        () -> planEquals(binary.right(), binary.left()));
+                return keys.isPresent() ? keys : planComposite(expression, 1);
+            }
+            case ValueIn: {
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                return propertyOf(binary.left()).flatMap(property -> constantOf(binary.right())
+                        .flatMap(Optionals.ofType(Collection.class))
+                        .flatMap(values -> planIn(property, (Collection<?>)values)));
+            }
+            case IsNull: {
+                UnaryOperationExpression<S, ?, ?> unary = (UnaryOperationExpression<S, ?, ?>)expression;
+                return propertyOf(unary.operand()).flatMap(this::planIsNull);
+            }
+            case LessThan: {
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                return Optionals.or(
+                        () -> planRange(binary.left(), binary.right(), false),
+                        () -> planRange(binary.right(), binary.left(), true));
+            }
+            case GreaterThan: {
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                return Optionals.or(
+                        () -> planRange(binary.left(), binary.right(), true),
+                        () -> planRange(binary.right(), binary.left(), false));
+            }
+            case SearchText: {
+                BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+                return planSearchText(binary.left(), binary.right());
+            }
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private Optional<Collection<K>> planEquals(ObjectExpression<S, ?> propertyExp, ObjectExpression<S, ?> valueExp) {
+        return propertyOf(propertyExp).flatMap(property -> constantOf(valueExp).flatMap(value -> isKey(property)
+                ? Optional.<Collection<K>>of(keyClass.isInstance(value) ? Collections.singletonList(toKey(value)) : Collections.emptyList())
+                : lookup(property, index -> index.lookupEqual(value))));
+    }
+
+    /**
+     * Serves conjunction of {@code property == constant} conditions by composite index, covering
+     * at least {@code minCoverage} of the properties (the one covering most properties is chosen)
+     */
+    private Optional<Collection<K>> planComposite(ObjectExpression<S, ?> expression, int minCoverage) {
+        if (compositeIndexes.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<PropertyMeta<S, ?>, Object> values = new HashMap<>();
+        collectEqualities(expression, values);
+        return compositeIndexes.stream()
+                .filter(index -> index.coverage(values) >= minCoverage)
+                .max(Comparator.comparingInt(index -> index.coverage(values)))
+                .flatMap(index -> index.lookupEqual(values));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collectEqualities(ObjectExpression<S, ?> expression, Map<PropertyMeta<S, ?>, Object> values) {
+        expression = unwrap(expression);
+        if (expression.type() == Expression.Type.And) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            collectEqualities(binary.left(), values);
+            collectEqualities(binary.right(), values);
+        } else if (expression.type() == Expression.Type.Equals) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            collectEquality(binary.left(), binary.right(), values);
+            collectEquality(binary.right(), binary.left(), values);
+        }
+    }
+
+    private void collectEquality(ObjectExpression<S, ?> propertyExp, ObjectExpression<S, ?> valueExp, Map<PropertyMeta<S, ?>, Object> values) {
+        propertyOf(propertyExp).ifPresent(property -> constantOf(valueExp).ifPresent(value -> values.putIfAbsent(property, value)));
+    }
+
+    private Optional<Collection<K>> planIn(PropertyMeta<S, ?> property, Collection<?> values) {
+        if (isKey(property)) {
+            return Optional.<Collection<K>>of(values.stream()
+                    .filter(keyClass::isInstance)
+                    .map(this::toKey)
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
+        }
+        return lookup(property, index -> index.lookupIn(values));
+    }
+
+    private Optional<Collection<K>> planSearchText(ObjectExpression<S, ?> targetExp, ObjectExpression<S, ?> searchTextExp) {
+        if (!searchIndex.isPresent() || unwrap(targetExp).type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        return constantOf(searchTextExp)
+                .flatMap(Optionals.ofType(String.class))
+                .flatMap(searchIndex.get()::lookup);
+    }
+
+    private Optional<Collection<K>> planIsNull(PropertyMeta<S, ?> property) {
+        return isKey(property)
+                ? Optional.<Collection<K>>of(Collections.emptyList())
+                : lookup(property, MemoryIndex::lookupNull);
+    }
+
+    private Optional<Collection<K>> planRange(ObjectExpression<S, ?> propertyExp, ObjectExpression<S, ?> boundExp, boolean lowerBound) {
+        return propertyOf(propertyExp).flatMap(property -> constantOf(boundExp).flatMap(bound -> lookup(property, index -> lowerBound
+                ? index.lookupRange(bound, false, null, false)
+                : index.lookupRange(null, false, bound, false))));
+    }
+
+    private Optional<Collection<K>> lookup(PropertyMeta<S, ?> property, java.util.function.Function<MemoryIndex<K, S, ?>, Optional<Collection<K>>> lookup) {
+        return indexes.get(property)
+                .stream()
+                .map(lookup)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findFirst();
+    }
+
+    private boolean isKey(PropertyMeta<S, ?> property) {
+        return property == metaClass.keyProperty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private K toKey(Object value) {
+        return (K)value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<PropertyMeta<S, ?>> propertyOf(ObjectExpression<S, ?> expression) {
+        expression = unwrap(expression);
+        if (!(expression instanceof PropertyExpression)) {
+            return Optional.empty();
+        }
+        PropertyExpression<S, ?, ?> propertyExpression = (PropertyExpression<S, ?, ?>)expression;
+        return unwrap(propertyExpression.target()).type().operationType() == Expression.OperationType.Argument
+                ? Optional.of((PropertyMeta<S, ?>)propertyExpression.property())
+                : Optional.empty();
+    }
+
+    private Optional<Object> constantOf(ObjectExpression<S, ?> expression) {
+        expression = unwrap(expression);
+        return expression instanceof ConstantExpression
+                ? Optional.ofNullable(((ConstantExpression<S, ?>)expression).value())
+                : Optional.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, T> ObjectExpression<S, T> unwrap(ObjectExpression<S, T> expression) {
+        while (expression instanceof DelegateExpression && !(expression instanceof PropertyExpression)) {
+            expression = ((DelegateExpression<S, T>)expression).delegate();
+        }
+        return expression;
+    }
+
+    private static <K> Collection<K> intersect(Collection<K> first, Collection<K> second) {
+        Collection<K> smaller = first.size() <= second.size() ? first : second;
+        Collection<K> larger = smaller == first ? second : first;
+        Set<K> lookup = larger instanceof Set ? (Set<K>)larger : new HashSet<>(larger);
+        return smaller.stream().filter(lookup::contains).collect(Collectors.toList());
+    }
+
+    private static <K> Collection<K> union(Collection<K> first, Collection<K> second) {
+        Set<K> union = new LinkedHashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+
+    private static <K, S> ImmutableListMultimap<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> createIndexes(MetaClassWithKey<K, S> metaClass) {
+        ImmutableListMultimap.Builder<PropertyMeta<S, ?>, MemoryIndex<K, S, ?>> builder = ImmutableListMultimap.builder();
+        Streams.fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Indexable.class) && p != metaClass.keyProperty())
+                .forEach(p -> {
+                    builder.put(p, MemoryIndex.hashIndex(p));
+                    if (MemoryIndex.isSortable(p)) {
+                        builder.put(p, MemoryIndex.sortedIndex(p));
+                    }
+                });
+        if (MemoryIndex.isSortable(metaClass.keyProperty())) {
+            builder.put(metaClass.keyProperty(), MemoryIndex.sortedIndex(metaClass.keyProperty()));
+        }
+        return builder.build();
+    }
+}
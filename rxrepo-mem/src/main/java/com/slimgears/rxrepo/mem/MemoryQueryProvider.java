@@ -5,12 +5,15 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.AbstractEntityQueryProviderAdapter;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.SchedulingProvider;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.stream.Safe;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.functions.Function;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -20,14 +23,24 @@ import java.util.concurrent.atomic.AtomicLong;
 public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter implements MetaObjectResolver {
     private final List<AutoCloseable> closeableList = Collections.synchronizedList(new ArrayList<>());
     private final AtomicLong sequenceNumber = new AtomicLong();
+    private final Object transactionLock = new Object();
     private final SchedulingProvider schedulingProvider;
+    private final ExpressionCompiler compiler;
 
-    private MemoryQueryProvider(SchedulingProvider schedulingProvider) {
+    private MemoryQueryProvider(SchedulingProvider schedulingProvider, ExpressionCompiler compiler) {
         this.schedulingProvider = schedulingProvider;
+        this.compiler = compiler;
     }
 
     public static MemoryQueryProvider create(SchedulingProvider schedulingProvider) {
-        return new MemoryQueryProvider(schedulingProvider);
+        return create(schedulingProvider, ExpressionCompiler.standard());
+    }
+
+    /**
+     * @param compiler compiler of predicates and mappings, evaluated by queries (e.g. {@link ExpressionCompiler#specialized()})
+     */
+    public static MemoryQueryProvider create(SchedulingProvider schedulingProvider, ExpressionCompiler compiler) {
+        return new MemoryQueryProvider(schedulingProvider, compiler);
     }
 
     @Override
@@ -42,9 +55,20 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
                 .observeOn(schedulingProvider.scheduler());
     }
 
+    /**
+     * Runs transaction against copy-on-write overlay (see {@link MemoryTransaction}), which is applied on commit
+     */
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return Completable.defer(() -> {
+            MemoryTransaction transaction = MemoryTransaction.create(this, sequenceNumber, transactionLock);
+            return body.apply(transaction).andThen(transaction.commit());
+        });
+    }
+
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, sequenceNumber);
+        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, sequenceNumber, compiler);
         closeableList.add(provider);
         return provider;
     }
@@ -56,7 +80,11 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
 
     @Override
     public <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key) {
-        return ((MemoryEntityQueryProvider<K, S>)entities(metaClass)).find(key);
+        return memoryEntities(metaClass).find(key);
+    }
+
+    <K, S> MemoryEntityQueryProvider<K, S> memoryEntities(MetaClassWithKey<K, S> metaClass) {
+        return (MemoryEntityQueryProvider<K, S>)entities(metaClass);
     }
 
     @Override
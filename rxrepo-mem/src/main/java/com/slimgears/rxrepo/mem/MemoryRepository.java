@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.query.decorator.*;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.SchedulingProvider;
 import com.slimgears.rxrepo.util.SemaphoreLockProvider;
 import io.reactivex.Scheduler;
@@ -13,15 +14,51 @@ import java.time.Duration;
 
 public class MemoryRepository {
     public static Repository create(QueryProvider.Decorator... decorators) {
-        SchedulingProvider schedulingProvider = CachedRoundRobinSchedulingProvider.create(10, Duration.ofMinutes(1));
-        return Repository
-                .fromProvider(
-                        MemoryQueryProvider.create(schedulingProvider),
-                        //LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
-                        LiveQueryProviderDecorator.create(Duration.ofMillis(2000)),
-                        ObserveOnSchedulingQueryProviderDecorator.create(schedulingProvider),
-                        SubscribeOnSchedulingQueryProviderDecorator.createDefault(),
-                        UpdateReferencesFirstQueryProviderDecorator.create(),
-                        QueryProvider.Decorator.of(decorators));
+        return builder().decorate(decorators).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private ExpressionCompiler expressionCompiler = ExpressionCompiler.standard();
+        private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+
+        private Builder() {
+        }
+
+        /**
+         * Compiler of predicates and mappings, evaluated by queries and live query dispatching.
+         * {@link ExpressionCompiler#specialized()} caches compiled templates per expression shape.
+         */
+        public Builder expressionCompiler(ExpressionCompiler expressionCompiler) {
+            this.expressionCompiler = expressionCompiler;
+            return this;
+        }
+
+        public Builder useSpecializedExpressionCompiler(boolean useSpecializedExpressionCompiler) {
+            return expressionCompiler(useSpecializedExpressionCompiler
+                    ? ExpressionCompiler.specialized()
+                    : ExpressionCompiler.standard());
+        }
+
+        public Builder decorate(QueryProvider.Decorator... decorators) {
+            decorator = QueryProvider.Decorator.of(this.decorator, QueryProvider.Decorator.of(decorators));
+            return this;
+        }
+
+        public Repository build() {
+            SchedulingProvider schedulingProvider = CachedRoundRobinSchedulingProvider.create(10, Duration.ofMinutes(1));
+            return Repository
+                    .fromProvider(
+                            MemoryQueryProvider.create(schedulingProvider, expressionCompiler),
+                            //LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
+                            LiveQueryProviderDecorator.create(Duration.ofMillis(2000), Duration.ZERO, expressionCompiler),
+                            ObserveOnSchedulingQueryProviderDecorator.create(schedulingProvider),
+                            SubscribeOnSchedulingQueryProviderDecorator.createDefault(),
+                            UpdateReferencesFirstQueryProviderDecorator.create(),
+                            decorator);
+        }
     }
 }
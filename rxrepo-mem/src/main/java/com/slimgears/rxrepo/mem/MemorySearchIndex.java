@@ -0,0 +1,109 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.encoding.MetaClassSearchableFields;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Inverted trigram index over searchable text (see {@link MetaClassSearchableFields}) of the objects.
+ * Text is padded at the end, so that every position of the text starts a trigram. Search strings of 3 or more
+ * characters are resolved by intersecting keys of all their trigrams, while shorter ones by union of keys of
+ * all trigrams, starting with the search string. In both cases the result is a superset of matching keys.
+ */
+class MemorySearchIndex<K, S> {
+    private final static int gramLength = 3;
+    private final static String padding = "\0\0";
+    private final Function<Object, String> searchableText;
+    private final ConcurrentSkipListMap<String, Set<K>> grams = new ConcurrentSkipListMap<>();
+
+    private MemorySearchIndex(Function<Object, String> searchableText) {
+        this.searchableText = searchableText;
+    }
+
+    static <K, S> Optional<MemorySearchIndex<K, S>> create(MetaClass<S> metaClass) {
+        return MetaClassSearchableFields.searchableTextFromEntity(metaClass).map(MemorySearchIndex::new);
+    }
+
+    void update(K key, S oldObject, S newObject) {
+        if (oldObject == newObject) {
+            return;
+        }
+        Set<String> oldGrams = oldObject != null ? gramsOf(searchableText.apply(oldObject)) : Collections.emptySet();
+        Set<String> newGrams = newObject != null ? gramsOf(searchableText.apply(newObject)) : Collections.emptySet();
+        oldGrams.stream().filter(gram -> !newGrams.contains(gram)).forEach(gram -> remove(key, gram));
+        newGrams.stream().filter(gram -> !oldGrams.contains(gram)).forEach(gram -> add(key, gram));
+    }
+
+    void clear() {
+        grams.clear();
+    }
+
+    /**
+     * Returns keys of the objects, which searchable text may contain given string, or empty if
+     * the lookup is not selective (empty search string).
+     */
+    Optional<Collection<K>> lookup(String searchText) {
+        if (searchText == null || searchText.isEmpty()) {
+            return Optional.empty();
+        }
+        if (searchText.length() < gramLength) {
+            Set<K> keys = new HashSet<>();
+            grams.subMap(searchText, true, searchText + Character.MAX_VALUE, true).values().forEach(keys::addAll);
+            return Optional.of(keys);
+        }
+
+        List<Set<K>> postings = new ArrayList<>();
+        for (int i = 0; i <= searchText.length() - gramLength; ++i) {
+            Set<K> keys = grams.get(searchText.substring(i, i + gramLength));
+            if (keys == null) {
+                return Optional.of(Collections.emptyList());
+            }
+            postings.add(keys);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<K> result = new HashSet<>(postings.get(0));
+        postings.stream().skip(1).forEach(result::retainAll);
+        return Optional.of(result);
+    }
+
+    private static Set<String> gramsOf(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String padded = text + padding;
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < text.length(); ++i) {
+            grams.add(padded.substring(i, i + gramLength));
+        }
+        return grams;
+    }
+
+    private void add(K key, String gram) {
+        while (true) {
+            Set<K> keys = grams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet());
+            synchronized (keys) {
+                if (grams.get(gram) == keys) {
+                    keys.add(key);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void remove(K key, String gram) {
+        Set<K> keys = grams.get(gram);
+        if (keys == null) {
+            return;
+        }
+        synchronized (keys) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                grams.remove(gram, keys);
+            }
+        }
+    }
+}
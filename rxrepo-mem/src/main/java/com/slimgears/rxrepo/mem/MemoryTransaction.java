@@ -0,0 +1,269 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Copy-on-write overlay over {@link MemoryQueryProvider}, bound to a single transaction.
+ * Changes are collected in the overlay, and applied to the underlying entity providers on commit, while holding
+ * write locks of all modified keys, with a single sequence number. Notifications are published once all changes are applied.
+ * Commit fails with {@link ConcurrentModificationException} if any of the modified objects was changed
+ * after it was first read by the transaction.
+ * Writes by key observe changes, made within the transaction, while queries observe committed state.
+ */
+class MemoryTransaction extends AbstractEntityQueryProviderAdapter {
+    private final MemoryQueryProvider provider;
+    private final AtomicLong sequenceNumber;
+    private final Object commitLock;
+    private final List<EntityOverlay<?, ?>> overlays = new CopyOnWriteArrayList<>();
+
+    private MemoryTransaction(MemoryQueryProvider provider, AtomicLong sequenceNumber, Object commitLock) {
+        this.provider = provider;
+        this.sequenceNumber = sequenceNumber;
+        this.commitLock = commitLock;
+    }
+
+    static MemoryTransaction create(MemoryQueryProvider provider, AtomicLong sequenceNumber, Object commitLock) {
+        return new MemoryTransaction(provider, sequenceNumber, commitLock);
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+        return provider.query(query);
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+        return provider.liveQuery(query);
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
+        return provider.queryAndObserve(queryInfo, observeInfo);
+    }
+
+    @Override
+    public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        return provider.aggregate(query, aggregator);
+    }
+
+    @Override
+    public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        return provider.liveAggregate(query, aggregator);
+    }
+
+    @Override
+    protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
+        EntityOverlay<K, S> overlay = new EntityOverlay<>(provider.memoryEntities(metaClass));
+        overlays.add(overlay);
+        return overlay;
+    }
+
+    @Override
+    protected Completable dropAllProviders() {
+        return Completable.error(new UnsupportedOperationException("Cannot drop entities within transaction"));
+    }
+
+    Completable commit() {
+        return Completable.fromAction(() -> {
+            List<EntityOverlay<?, ?>> modified = new ArrayList<>();
+            overlays.stream().filter(EntityOverlay::isModified).forEach(modified::add);
+            if (modified.isEmpty()) {
+                return;
+            }
+            synchronized (commitLock) {
+                withWriteLocks(modified.iterator(), () -> {
+                    if (!modified.stream().allMatch(EntityOverlay::isValid)) {
+                        throw new ConcurrentModificationException("Concurrent modification detected, transaction is rolled back");
+                    }
+                    long seqNum = sequenceNumber.incrementAndGet();
+                    modified.forEach(overlay -> overlay.apply(seqNum));
+                    modified.forEach(EntityOverlay::publish);
+                });
+            }
+        });
+    }
+
+    private static void withWriteLocks(Iterator<EntityOverlay<?, ?>> overlays, Runnable action) {
+        if (!overlays.hasNext()) {
+            action.run();
+            return;
+        }
+        overlays.next().withWriteLocks(() -> withWriteLocks(overlays, action));
+    }
+
+    private static class Change<S> {
+        private final S committedValue;
+        private S value;
+
+        private Change(S committedValue, S value) {
+            this.committedValue = committedValue;
+            this.value = value;
+        }
+    }
+
+    private static class EntityOverlay<K, S> implements EntityQueryProvider<K, S> {
+        private final MemoryEntityQueryProvider<K, S> entities;
+        private final Map<K, Change<S>> changes = new LinkedHashMap<>();
+        private final List<Notification<S>> notifications = new ArrayList<>();
+
+        private EntityOverlay(MemoryEntityQueryProvider<K, S> entities) {
+            this.entities = entities;
+        }
+
+        @Override
+        public MetaClassWithKey<K, S> metaClass() {
+            return entities.metaClass();
+        }
+
+        @Override
+        public Maybe<Supplier<S>> insertOrUpdate(K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return Maybe.defer(() -> {
+                S oldValue = valueOf(key);
+                return entityUpdater
+                        .apply(Optional.ofNullable(oldValue).map(Maybe::just).orElseGet(Maybe::empty))
+                        .flatMap(e -> trySet(key, oldValue, e)
+                                ? Maybe.just(e)
+                                : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass().simpleName() + " detected")))
+                        .map(e -> () -> e);
+            });
+        }
+
+        @Override
+        public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+            return entities.query(query);
+        }
+
+        @Override
+        public <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+            return entities.liveQuery(query);
+        }
+
+        @Override
+        public <T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            return entities.aggregate(query, aggregator);
+        }
+
+        /**
+         * Not supported, as bulk updates by predicate are not collected in the overlay
+         */
+        @Override
+        public Single<Integer> update(UpdateInfo<K, S> update) {
+            return Single.error(() -> new UnsupportedOperationException("Cannot update by predicate within transaction"));
+        }
+
+        /**
+         * Committed objects are matched, unless modified within transaction, in which case their modified values are matched
+         */
+        @Override
+        public Single<Integer> delete(DeleteInfo<K, S> delete) {
+            Predicate<S> predicate = entities.compiler().compileRxPredicate(delete.predicate());
+            return entities
+                    .query(QueryInfo.<K, S, S>builder()
+                            .metaClass(metaClass())
+                            .predicate(delete.predicate())
+                            .build())
+                    .map(n -> metaClass().keyOf(n.newValue()))
+                    .toList()
+                    .map(committedKeys -> {
+                        synchronized (this) {
+                            Set<K> keys = new LinkedHashSet<>();
+                            committedKeys.stream().filter(key -> !changes.containsKey(key)).forEach(keys::add);
+                            for (Map.Entry<K, Change<S>> entry : changes.entrySet()) {
+                                if (entry.getValue().value != null && predicate.test(entry.getValue().value)) {
+                                    keys.add(entry.getKey());
+                                }
+                            }
+                            long limit = Optional.ofNullable(delete.limit()).orElse(Long.MAX_VALUE);
+                            int count = 0;
+                            for (K key : keys) {
+                                if (count >= limit) {
+                                    break;
+                                }
+                                remove(key);
+                                ++count;
+                            }
+                            return count;
+                        }
+                    });
+        }
+
+        @Override
+        public Completable drop() {
+            return Completable.error(new UnsupportedOperationException("Cannot drop entities within transaction"));
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private synchronized S valueOf(K key) {
+            Change<S> change = changes.get(key);
+            return change != null ? change.value : entities.current(key);
+        }
+
+        private synchronized boolean trySet(K key, S expectedValue, S newValue) {
+            Change<S> change = changes.get(key);
+            if (change != null) {
+                if (change.value != expectedValue) {
+                    return false;
+                }
+                change.value = newValue;
+                return true;
+            }
+            S committedValue = entities.current(key);
+            if (committedValue != expectedValue) {
+                return false;
+            }
+            changes.put(key, new Change<>(committedValue, newValue));
+            return true;
+        }
+
+        private synchronized void remove(K key) {
+            Change<S> change = changes.get(key);
+            if (change != null) {
+                change.value = null;
+            } else {
+                changes.put(key, new Change<>(entities.current(key), null));
+            }
+        }
+
+        private synchronized boolean isModified() {
+            return !changes.isEmpty();
+        }
+
+        private synchronized void withWriteLocks(Runnable action) {
+            entities.withWriteLocks(changes.keySet(), action);
+        }
+
+        private synchronized boolean isValid() {
+            return changes.entrySet()
+                    .stream()
+                    .allMatch(entry -> entities.current(entry.getKey()) == entry.getValue().committedValue);
+        }
+
+        private synchronized void apply(long seqNum) {
+            changes.forEach((key, change) -> entities
+                    .apply(key, change.committedValue, change.value, seqNum)
+                    .ifPresent(notifications::add));
+        }
+
+        private synchronized void publish() {
+            notifications.forEach(entities::publish);
+            notifications.clear();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.test.Manufacturer;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.SchedulingProvider;
+import io.reactivex.Maybe;
+import io.reactivex.disposables.Disposable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class MemoryEntityQueryProviderTest {
+    private final static int threadCount = 8;
+    private final static int updatesPerThread = 250;
+    private MemoryQueryProvider queryProvider;
+    private MemoryEntityQueryProvider<UniqueId, Manufacturer> manufacturers;
+    private final List<Notification<Manufacturer>> notifications = Collections.synchronizedList(new ArrayList<>());
+    private Disposable subscription;
+
+    @Before
+    public void setUp() {
+        queryProvider = MemoryQueryProvider.create(SchedulingProvider.immediate());
+        manufacturers = queryProvider.memoryEntities(Manufacturer.metaClass);
+        subscription = manufacturers
+                .liveQuery(QueryInfo.<UniqueId, Manufacturer, Manufacturer>builder()
+                        .metaClass(Manufacturer.metaClass)
+                        .build())
+                .subscribe(notifications::add);
+    }
+
+    @After
+    public void tearDown() {
+        subscription.dispose();
+        queryProvider.close();
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfSameKey() throws Exception {
+        UniqueId key = UniqueId.manufacturerId(1);
+        runConcurrently(thread -> key);
+
+        Assert.assertEquals(threadCount * updatesPerThread, counterOf(manufacturers.current(key)));
+        assertOneNotificationPerCommittedChange(notifications);
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfDifferentKeys() throws Exception {
+        runConcurrently(UniqueId::manufacturerId);
+
+        Map<UniqueId, List<Notification<Manufacturer>>> notificationsByKey = notifications
+                .stream()
+                .collect(Collectors.groupingBy(n -> Objects.requireNonNull(n.newValue()).id()));
+
+        Assert.assertEquals(threadCount, notificationsByKey.size());
+        for (int thread = 0; thread < threadCount; ++thread) {
+            UniqueId key = UniqueId.manufacturerId(thread);
+            Assert.assertEquals(updatesPerThread, counterOf(manufacturers.current(key)));
+            assertOneNotificationPerCommittedChange(notificationsByKey.get(key));
+        }
+    }
+
+    private void runConcurrently(IntFunction<UniqueId> keyOfThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = IntStream.range(0, threadCount)
+                    .<Future<?>>mapToObj(thread -> executor.submit(() -> {
+                        startLatch.await();
+                        for (int i = 0; i < updatesPerThread; ++i) {
+                            increment(keyOfThread.apply(thread));
+                        }
+                        return null;
+                    }))
+                    .collect(Collectors.toList());
+            startLatch.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void increment(UniqueId key) {
+        manufacturers
+                .insertOrUpdate(key, false, current -> current
+                        .map(m -> Manufacturer.create(key, String.valueOf(counterOf(m) + 1)))
+                        .switchIfEmpty(Maybe.fromCallable(() -> Manufacturer.create(key, "1"))))
+                .retry(e -> e instanceof ConcurrentModificationException)
+                .blockingGet();
+    }
+
+    private static void assertOneNotificationPerCommittedChange(List<Notification<Manufacturer>> notifications) {
+        List<Integer> counters = notifications
+                .stream()
+                .map(n -> counterOf(n.newValue()))
+                .sorted()
+                .collect(Collectors.toList());
+
+        Assert.assertEquals(IntStream.rangeClosed(1, counters.size()).boxed().collect(Collectors.toList()), counters);
+        notifications.forEach(n -> Assert.assertEquals(
+                n.oldValue() != null ? counterOf(n.oldValue()) + 1 : 1,
+                counterOf(n.newValue())));
+    }
+
+    private static int counterOf(Manufacturer manufacturer) {
+        return Integer.parseInt(Objects.requireNonNull(Objects.requireNonNull(manufacturer).name()));
+    }
+}
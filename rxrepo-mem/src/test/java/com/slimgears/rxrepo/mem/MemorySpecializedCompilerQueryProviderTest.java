@@ -0,0 +1,72 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
+import com.slimgears.rxrepo.util.SchedulingProvider;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.slimgears.rxrepo.test.TestUtils.countExactly;
+
+/**
+ * Runs repository tests against memory repository with {@link ExpressionCompiler#specialized()}
+ */
+public class MemorySpecializedCompilerQueryProviderTest extends AbstractRepositoryTest {
+    private final AtomicInteger compiledCount = new AtomicInteger();
+
+    @Override
+    protected Repository createRepository(SchedulingProvider schedulingProvider) {
+        ExpressionCompiler specialized = ExpressionCompiler.specialized();
+        return MemoryRepository.builder()
+                .expressionCompiler(new ExpressionCompiler() {
+                    @Override
+                    public <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
+                        compiledCount.incrementAndGet();
+                        return specialized.compile(exp);
+                    }
+                })
+                .build();
+    }
+
+    @Test
+    public void testQueriesAndLiveQueriesUseConfiguredCompiler() {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+        Observable.fromIterable(productList)
+                .flatMapSingle(products::update)
+                .ignoreElements()
+                .blockingAwait();
+
+        compiledCount.set(0);
+        Assert.assertEquals(
+                Long.valueOf(productList.stream().filter(p -> p.price() > 110).count()),
+                products.query().where(Product.$.price.greaterThan(110)).count().blockingGet());
+        Assert.assertTrue(compiledCount.get() > 0);
+
+        compiledCount.set(0);
+        Product product = productList.get(0);
+        TestObserver<Notification<Product>> productObserver = products
+                .query()
+                .where(Product.$.key.eq(product.key()))
+                .queryAndObserve()
+                .test();
+
+        productObserver.assertOf(countExactly(1));
+        products.update(product.toBuilder().price(product.price() + 1).build()).ignoreElement().blockingAwait();
+        productObserver
+                .assertOf(countExactly(2))
+                .assertValueAt(1, n -> n.isModify() && n.newValue().price() == product.price() + 1);
+        Assert.assertTrue(compiledCount.get() > 0);
+    }
+}
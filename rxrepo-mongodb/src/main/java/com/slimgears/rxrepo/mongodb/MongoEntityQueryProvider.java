@@ -4,17 +4,24 @@ import com.google.common.reflect.TypeToken;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.OperationType;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
-import com.mongodb.reactivestreams.client.AggregatePublisher;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.mongodb.reactivestreams.client.Success;
+import com.slimgears.rxrepo.annotations.Indexable;
 import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
 import com.slimgears.rxrepo.encoding.MetaDocument;
+import com.slimgears.rxrepo.encoding.MetaObjectResolver;
+import com.slimgears.rxrepo.encoding.codecs.MetaClassCodec;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.CollectionExpression;
 import com.slimgears.rxrepo.expressions.Expression;
@@ -24,9 +31,11 @@ import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.util.CompositeIndexInfo;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
 import com.slimgears.util.reflect.TypeTokens;
 import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Optionals;
@@ -34,6 +43,7 @@ import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 import org.bson.*;
@@ -42,17 +52,23 @@ import org.bson.codecs.Decoder;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoCloseable {
     private final static Logger log = LoggerFactory.getLogger(MongoEntityQueryProvider.class);
+    private final static int decodeBatchSize = 1000;
+    private final static long decodeBatchTimeMillis = 10;
+    private final static int namespaceExistsErrorCode = 48;
     private final MetaClassWithKey<K, S> metaClass;
     private final Lazy<MongoCollection<Document>> objectCollection;
     private final Lazy<MongoCollection<Document>> notificationCollection;
@@ -61,21 +77,109 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
     private final Lazy<Codec<Document>> docCodec;
     private final CodecRegistry codecRegistry;
     private final MetaClassFieldMapper fieldMapper;
+    private final MetaObjectResolver objectResolver;
+    private final SerializedClientSession session;
+    private final AtomicReference<Completable> indexes;
 
-    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper) {
+    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper, MetaObjectResolver objectResolver) {
         this.metaClass = metaClass;
         this.codecRegistry = database.getCodecRegistry();
         this.codec = Lazy.of(() -> codecRegistry.get(metaClass.asClass()));
         this.database = database;
         this.docCodec = Lazy.of(() -> codecRegistry.get(Document.class));
         this.fieldMapper = fieldMapper;
+        this.objectResolver = objectResolver;
         this.objectCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName()));
         this.notificationCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName() + ".updates"));
+        this.session = null;
+        this.indexes = new AtomicReference<>(createIndexes());
+    }
+
+    private MongoEntityQueryProvider(MongoEntityQueryProvider<K, S> provider, SerializedClientSession session) {
+        this.metaClass = provider.metaClass;
+        this.codecRegistry = provider.codecRegistry;
+        this.codec = provider.codec;
+        this.database = provider.database;
+        this.docCodec = provider.docCodec;
+        this.fieldMapper = provider.fieldMapper;
+        this.objectResolver = provider.objectResolver;
+        this.objectCollection = provider.objectCollection;
+        this.notificationCollection = provider.notificationCollection;
+        this.session = session;
+        this.indexes = provider.indexes;
+    }
+
+    /**
+     * @return Provider, which shares collections with this one, while executing all operations within given session
+     * (one at a time, as the session is not thread-safe)
+     */
+    MongoEntityQueryProvider<K, S> withSession(SerializedClientSession session) {
+        return new MongoEntityQueryProvider<>(this, session);
+    }
+
+    /**
+     * Completes once collections (of objects and of notifications) and indexes are created. They are created by the first
+     * operation (subsequent ones share the result), always outside of the session, as MongoDB before 4.4 cannot create
+     * collections within transaction (neither explicitly, nor implicitly by insertion). Failed creation is retried by the next operation.
+     */
+    private Completable ensureIndexes() {
+        Completable current = indexes.get();
+        return current.doOnError(e -> indexes.compareAndSet(current, createIndexes()));
+    }
+
+    private Completable createIndexes() {
+        return Completable.defer(() -> {
+            List<IndexModel> indexModels = Stream.concat(
+                    Streams.fromIterable(metaClass.properties())
+                            .filter(p -> p.hasAnnotation(Indexable.class) && p != metaClass.keyProperty())
+                            .map(this::toIndexModel),
+                    CompositeIndexInfo.of(metaClass)
+                            .stream()
+                            .map(this::toCompositeIndexModel))
+                    .collect(Collectors.toList());
+            Completable collections = createCollection(metaClass.simpleName())
+                    .andThen(createCollection(metaClass.simpleName() + ".updates"));
+            if (indexModels.isEmpty()) {
+                return collections;
+            }
+            return collections.andThen(Completable.fromPublisher(objectCollection.get().createIndexes(indexModels))
+                    .doOnSubscribe(d -> log.debug("Creating {} index(es) for {}", indexModels.size(), metaClass.simpleName())));
+        }).cache();
+    }
+
+    private Completable createCollection(String name) {
+        return Completable.fromPublisher(database.createCollection(name))
+                .onErrorComplete(MongoEntityQueryProvider::isNamespaceExists);
+    }
+
+    private static boolean isNamespaceExists(Throwable e) {
+        return e instanceof MongoCommandException && ((MongoCommandException)e).getErrorCode() == namespaceExistsErrorCode;
+    }
+
+    private IndexModel toIndexModel(PropertyMeta<S, ?> property) {
+        boolean unique = property.getAnnotation(Indexable.class).unique();
+        // Mongo indexes are B-trees, so every index also serves range conditions and sorting.
+        // Unique indexes are sparse, so that multiple documents may omit the (nullable) field
+        return new IndexModel(Indexes.ascending(toIndexedFieldName(property)), new IndexOptions().unique(unique).sparse(unique));
+    }
+
+    private IndexModel toCompositeIndexModel(CompositeIndexInfo<S> index) {
+        // Compound index: ordered by the properties in declaration order, so it also serves
+        // conditions on leading properties only, regardless of CompositeIndex.ordered()
+        String[] fields = index.properties().stream().map(this::toIndexedFieldName).toArray(String[]::new);
+        return new IndexModel(
+                Indexes.ascending(fields),
+                new IndexOptions().name(index.name()).unique(index.unique()).sparse(index.unique()));
+    }
+
+    private String toIndexedFieldName(PropertyMeta<S, ?> property) {
+        return PropertyMetas.isReference(property)
+                ? fieldMapper.toReferenceFieldName(property)
+                : fieldMapper.toFieldName(property);
     }
 
     private Maybe<Document> findDocument(K key) {
-        return Observable.fromPublisher(objectCollection.get()
-                .aggregate(MongoPipeline.builder()
+        return Observable.fromPublisher(aggregate(objectCollection.get(), MongoPipeline.builder()
                         .lookupAndUnwindReferences(metaClass)
                         .match(MongoPipeline.filterForKey(key))
                         .limit(1L)
@@ -90,8 +194,10 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .map(e -> objectToDocument(e, 0))
                 .collect(Collectors.toList());
 
-        return Completable
-                .fromPublisher(objectCollection.get().insertMany(documents))
+        return ensureIndexes()
+                .andThen(Completable.fromPublisher(session != null
+                        ? session.execute(s -> objectCollection.get().insertMany(s, documents))
+                        : objectCollection.get().insertMany(documents)))
                 .doOnSubscribe(d -> log.debug("Inserting {} documents", documents.size()))
                 .doOnComplete(() -> log.debug("Insert of {} documents complete", documents.size()))
                 .onErrorResumeNext(e -> Completable.error(convertError(e)));
@@ -109,7 +215,8 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         AtomicReference<S> newObject = new AtomicReference<>();
         AtomicReference<Document> oldDoc = new AtomicReference<>();
         AtomicReference<Document> newDoc = new AtomicReference<>();
-        return findDocument(key)
+        return ensureIndexes()
+                .andThen(findDocument(key))
                 .doOnSuccess(oldDoc::set)
                 .doOnSuccess(doc -> version.set(doc.getLong(fieldMapper.versionField())))
                 .map(this::objectFromDocument)
@@ -124,10 +231,10 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .doOnSuccess(newDoc::set)
                         .doOnSuccess(doc -> log.trace("Updating object: {}", doc))
                         .flatMap(doc -> Single
-                            .fromPublisher(objectCollection.get()
-                                    .replaceOne(
-                                            MongoPipeline.filterForKeyAndVersion(key, version.get()),
-                                            doc))
+                            .fromPublisher(replaceOne(
+                                    objectCollection.get(),
+                                    MongoPipeline.filterForKeyAndVersion(key, version.get()),
+                                    doc))
                             .doOnSuccess(res -> log.trace("Update result: {}", res))
                             .map(UpdateResult::getMatchedCount)
                             .flatMapMaybe(c -> c == 1
@@ -143,8 +250,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .doOnSuccess(newObject::set)
                         .doOnSuccess(doc -> log.trace("Creating new object: {}", doc))
                         .map(obj -> objectToDocument(obj, version.get()))
-                        .flatMap(doc -> Single.fromPublisher(objectCollection.get()
-                                .insertOne(doc))
+                        .flatMap(doc -> Single.fromPublisher(insertOne(objectCollection.get(), doc))
                                 .doOnSuccess(res -> log.trace("Insert result: {}", res))
                                 .toMaybe()
                                 .map(res -> newObject.get())
@@ -165,11 +271,14 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
     @SuppressWarnings("unchecked")
     @Override
     public <T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        AggregatePublisher<MetaDocument> publisher = objectCollection.get()
-                .aggregate(MongoPipeline.aggregationPipeline(query, aggregator), MetaDocument.class);
+        List<Document> pipeline = MongoPipeline.aggregationPipeline(query, aggregator);
+        Publisher<MetaDocument> publisher = session != null
+                ? session.execute(s -> objectCollection.get().aggregate(s, pipeline, MetaDocument.class))
+                : objectCollection.get().aggregate(pipeline, MetaDocument.class);
 
         TypeToken<R> resultType = aggregator.objectType(query.objectType());
-        Maybe<R> result = Observable.fromPublisher(publisher)
+        Maybe<R> result = ensureIndexes()
+                .andThen(Observable.fromPublisher(publisher))
                 .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
                 .map(doc -> doc.get(MongoPipeline.aggregationField, resultType))
                 .firstElement();
@@ -184,9 +293,8 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
     }
 
     private Observable<Document> queryDocuments(QueryInfo<K, S, ?> query) {
-        return Observable
-                .fromPublisher(objectCollection.get()
-                .aggregate(MongoPipeline.aggregationPipeline(query)));
+        return ensureIndexes()
+                .andThen(Observable.fromPublisher(aggregate(objectCollection.get(), MongoPipeline.aggregationPipeline(query))));
     }
 
     @Override
@@ -196,7 +304,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         Observable<Notification<S>> modifications = Observable.fromPublisher(notificationCollection.get().watch())
                 .map(ChangeStreamDocument::getFullDocument)
                 .doOnNext(d -> log.trace("New update: {}", d.toJson()))
-                .map(this::notificationFromDocument)
+                .compose(decodeInBatches(this::notificationFromDocument))
                 .filter(n -> !Objects.equals(n.oldValue(), n.newValue()));
 
         Observable<Notification<S>> insertions = Observable
@@ -204,15 +312,28 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .get()
                         .watch())
                 .doOnNext(d -> log.trace("Change detected: {}", d))
-                .flatMapMaybe(this::notificationFromChangeDocument);
+                .compose(decodeInBatches(this::notificationFromChangeDocument))
+                .concatMapMaybe(notification -> notification);
 
         return modifications.mergeWith(insertions)
                 .map(n -> n.map(mapper));
     }
 
+    /**
+     * Stored documents (unlike query results) contain only keys of referenced objects. Documents are, therefore, decoded in batches
+     * (emitted when full, or after {@link #decodeBatchTimeMillis}), so that references of the whole batch are resolved by a single
+     * lookup per referenced class (see {@link MetaClassCodec#decodeBatch(MetaObjectResolver, List, java.util.function.Function)})
+     */
+    private <D, R> ObservableTransformer<D, R> decodeInBatches(java.util.function.Function<D, R> decoder) {
+        return src -> src
+                .buffer(decodeBatchTimeMillis, TimeUnit.MILLISECONDS, decodeBatchSize)
+                .filter(docs -> !docs.isEmpty())
+                .concatMapSingle(docs -> MetaClassCodec.decodeBatch(objectResolver, docs, decoder))
+                .concatMapIterable(objects -> objects);
+    }
+
     private Completable publish(Document oldDoc, Document newDoc) {
-        return Completable.fromPublisher(notificationCollection.get()
-                .insertOne(createNotification(oldDoc, newDoc)));
+        return Completable.fromPublisher(insertOne(notificationCollection.get(), createNotification(oldDoc, newDoc)));
     }
 
     private Document createNotification(Document oldDoc, Document newDoc) {
@@ -229,8 +350,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
     private Completable publishNotification(Document notificationDocument) {
         return Completable
-                .fromPublisher(notificationCollection.get()
-                .insertOne(notificationDocument));
+                .fromPublisher(insertOne(notificationCollection.get(), notificationDocument));
     }
 
     @Override
@@ -256,8 +376,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .build())
                 .map(doc -> createNotification(doc, doc))
                 .flatMapCompletable(this::publishNotification)
-                .andThen(Observable.fromPublisher(objectCollection.get()
-                        .deleteMany(MongoPipeline.expr(deleteInfo.predicate())))
+                .andThen(Observable.fromPublisher(deleteMany(objectCollection.get(), MongoPipeline.expr(deleteInfo.predicate())))
                         .map(DeleteResult::getDeletedCount)
                         .firstElement()
                         .map(Long::intValue)
@@ -266,10 +385,35 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
     @Override
     public Completable drop() {
-        return Completable.fromPublisher(objectCollection.get().drop());
+        return Completable.fromPublisher(objectCollection.get().drop())
+                .doOnComplete(() -> indexes.set(createIndexes()));
+    }
+
+    private Publisher<Document> aggregate(MongoCollection<Document> collection, List<Document> pipeline) {
+        return session != null
+                ? session.execute(s -> collection.aggregate(s, pipeline))
+                : collection.aggregate(pipeline);
     }
 
-    private static Throwable convertError(Throwable e) {
+    private Publisher<Success> insertOne(MongoCollection<Document> collection, Document document) {
+        return session != null
+                ? session.execute(s -> collection.insertOne(s, document))
+                : collection.insertOne(document);
+    }
+
+    private Publisher<UpdateResult> replaceOne(MongoCollection<Document> collection, Document filter, Document document) {
+        return session != null
+                ? session.execute(s -> collection.replaceOne(s, filter, document))
+                : collection.replaceOne(filter, document);
+    }
+
+    private Publisher<DeleteResult> deleteMany(MongoCollection<Document> collection, Document filter) {
+        return session != null
+                ? session.execute(s -> collection.deleteMany(s, filter))
+                : collection.deleteMany(filter);
+    }
+
+    static Throwable convertError(Throwable e) {
         return isDuplicateKeyException(e)
                 ? new ConcurrentModificationException(e)
                 : e;
@@ -311,6 +455,10 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         return res;
     }
 
+    /**
+     * Inserted object is decoded immediately (so that its references are resolved with the rest of the decoded batch),
+     * while deleted object is looked up in notifications upon subscription to the returned {@link Maybe}
+     */
     private Maybe<Notification<S>> notificationFromChangeDocument(ChangeStreamDocument<Document> changeDoc) {
         if (changeDoc.getOperationType() == OperationType.INSERT) {
             S object = Optional
@@ -374,6 +522,10 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
     @Override
     public void close() {
+        // Collections are owned by the provider, this one was derived from
+        if (session != null) {
+            return;
+        }
         this.notificationCollection.close();
         this.objectCollection.close();
     }
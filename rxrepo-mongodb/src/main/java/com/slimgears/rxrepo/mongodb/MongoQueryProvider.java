@@ -2,6 +2,8 @@ package com.slimgears.rxrepo.mongodb;
 
 import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.reactivestreams.client.ClientSession;
 import com.mongodb.reactivestreams.client.MongoClient;
 import com.mongodb.reactivestreams.client.MongoClients;
 import com.mongodb.reactivestreams.client.MongoDatabase;
@@ -15,19 +17,34 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.AbstractEntityQueryProviderAdapter;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
 
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
 
 public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
     private final MongoClient client;
     private final MongoDatabase database;
+    private final MetaObjectResolver objectResolver;
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
 
     MongoQueryProvider(String connectionString, String dbName, int maxConnections) {
-        MetaObjectResolver objectResolver = new ObjectResolver();
+        this(connectionString, dbName, maxConnections, UnaryOperator.identity());
+    }
+
+    /**
+     * @param resolverDecorator decorates resolver of referenced objects (e.g. for monitoring of resolved references)
+     */
+    MongoQueryProvider(String connectionString, String dbName, int maxConnections, UnaryOperator<MetaObjectResolver> resolverDecorator) {
+        this.objectResolver = resolverDecorator.apply(new ObjectResolver());
         this.client = MetaClassCodec.withResolver(
                 objectResolver,
                 () -> MongoClients.create(MongoClientSettings
@@ -49,7 +66,7 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance);
+        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance, objectResolver);
     }
 
     @Override
@@ -57,6 +74,58 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
         return Completable.fromPublisher(database.drop());
     }
 
+    /**
+     * Runs {@code body} within multi-document transaction of a client session (requires MongoDB 4.0 or later, deployed as replica set).
+     * As MongoDB before 4.4 cannot create collections within transaction, collections of the entities are created outside of it,
+     * by the first operation on each entity.
+     * Notifications are written to the same session, so the change streams observe them only once the transaction is committed.
+     * As the session is not thread-safe, operations of {@code body} are executed one at a time (see {@link SerializedClientSession}).
+     */
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return Single.fromPublisher(client.startSession())
+                .map(SerializedClientSession::of)
+                .flatMapCompletable(session -> Completable
+                        .defer(() -> {
+                            session.startTransaction();
+                            return body.apply(new Transaction(session));
+                        })
+                        .andThen(Completable.fromPublisher(session.execute(ClientSession::commitTransaction)))
+                        .onErrorResumeNext(e -> Completable.fromPublisher(session.execute(ClientSession::abortTransaction))
+                                .onErrorComplete()
+                                .andThen(Completable.error(convertTransactionError(e))))
+                        .doFinally(session::close));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> MongoEntityQueryProvider<K, S> mongoEntities(MetaClassWithKey<K, S> metaClass) {
+        return (MongoEntityQueryProvider<K, S>)entities(metaClass);
+    }
+
+    private static Throwable convertTransactionError(Throwable e) {
+        return e instanceof MongoException && ((MongoException)e).hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)
+                ? new ConcurrentModificationException(e)
+                : MongoEntityQueryProvider.convertError(e);
+    }
+
+    private class Transaction extends AbstractEntityQueryProviderAdapter {
+        private final SerializedClientSession session;
+
+        private Transaction(SerializedClientSession session) {
+            this.session = session;
+        }
+
+        @Override
+        protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
+            return mongoEntities(metaClass).withSession(session);
+        }
+
+        @Override
+        protected Completable dropAllProviders() {
+            return Completable.error(new UnsupportedOperationException("Cannot drop entities within transaction"));
+        }
+    }
+
     private class ObjectResolver implements MetaObjectResolver {
         @Override
         public <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key) {
@@ -72,5 +141,18 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
                     .map(Notification::newValue)
                     .firstElement();
         }
+
+        @Override
+        public <K, S> Observable<S> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+            if (isClosed.get() || keys.isEmpty()) {
+                return Observable.empty();
+            }
+            return entities(metaClass)
+                    .query(QueryInfo.<K, S, S>builder()
+                            .metaClass(metaClass)
+                            .predicate(PropertyExpression.ofObject(ObjectExpression.arg(metaClass.asType()), metaClass.keyProperty()).in(keys))
+                            .build())
+                    .map(Notification::newValue);
+        }
     }
 }
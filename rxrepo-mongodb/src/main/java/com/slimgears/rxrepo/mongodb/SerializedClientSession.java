@@ -0,0 +1,46 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.mongodb.reactivestreams.client.ClientSession;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.subjects.CompletableSubject;
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * {@link ClientSession} is not thread-safe, while operations of a transaction body may be executed concurrently
+ * (e.g. by {@code flatMap} or {@code merge}). Operations are, therefore, executed one at a time, in order of subscription:
+ * each operation is started once all the previously subscribed ones are terminated or cancelled.
+ */
+class SerializedClientSession {
+    private final ClientSession session;
+    private final AtomicReference<Completable> lastOperation = new AtomicReference<>(Completable.complete());
+
+    private SerializedClientSession(ClientSession session) {
+        this.session = session;
+    }
+
+    static SerializedClientSession of(ClientSession session) {
+        return new SerializedClientSession(session);
+    }
+
+    <T> Publisher<T> execute(Function<ClientSession, Publisher<T>> operation) {
+        return Flowable.defer(() -> {
+            CompletableSubject completed = CompletableSubject.create();
+            Completable previous = lastOperation.getAndSet(completed);
+            return previous
+                    .andThen(Flowable.defer(() -> operation.apply(session)))
+                    .doFinally(completed::onComplete);
+        });
+    }
+
+    void startTransaction() {
+        session.startTransaction();
+    }
+
+    void close() {
+        session.close();
+    }
+}
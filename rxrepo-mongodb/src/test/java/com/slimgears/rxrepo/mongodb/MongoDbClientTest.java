@@ -7,6 +7,7 @@ import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.FullDocument;
 import com.mongodb.reactivestreams.client.*;
 import com.slimgears.rxrepo.mongodb.adapter.StandardCodecs;
+import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.test.*;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
@@ -17,7 +18,9 @@ import org.bson.Document;
 import org.junit.*;
 import org.reactivestreams.Publisher;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.slimgears.rxrepo.test.Products.createMany;
@@ -268,6 +271,25 @@ public class MongoDbClientTest {
                 .blockingAwait();
     }
 
+    @Test
+    public void testIndexesAreCreatedBeforeFirstOperation() {
+        try (Repository repository = MongoRepository.builder()
+                .port(MongoTestUtils.port)
+                .dbName(mongoDatabase.getName())
+                .build()) {
+            repository.entities(Product.metaClass).update(createMany(10)).blockingAwait();
+        }
+
+        List<List<String>> indexedFields = Observable
+                .fromPublisher(mongoDatabase.getCollection(Product.metaClass.simpleName()).listIndexes())
+                .<List<String>>map(index -> new ArrayList<>(index.get("key", Document.class).keySet()))
+                .toList()
+                .blockingGet();
+
+        Assert.assertTrue(indexedFields.toString(), indexedFields.contains(Collections.singletonList("price")));
+        Assert.assertTrue(indexedFields.toString(), indexedFields.contains(Arrays.asList("type", "price")));
+    }
+
     private void await(Publisher<?> publisher) {
         Completable.fromPublisher(publisher).blockingAwait();
     }
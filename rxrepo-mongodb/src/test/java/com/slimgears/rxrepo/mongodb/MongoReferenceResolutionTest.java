@@ -0,0 +1,120 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.encoding.MetaObjectResolver;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import org.junit.*;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.slimgears.rxrepo.test.TestUtils.countExactly;
+
+public class MongoReferenceResolutionTest {
+    private final static int productCount = 100;
+    private static AutoCloseable mongoProcess;
+    private final AtomicInteger resolveCount = new AtomicInteger();
+    private final AtomicInteger resolveAllCount = new AtomicInteger();
+    private Repository repository;
+
+    @BeforeClass
+    public static void setUpClass() {
+        mongoProcess = MongoTestUtils.startMongo();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (mongoProcess != null) {
+            mongoProcess.close();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        MongoQueryProvider queryProvider = new MongoQueryProvider(
+                MongoTestUtils.connectionString.getConnectionString(),
+                "test-references",
+                10,
+                CountingResolver::new);
+        repository = Repository.fromProvider(queryProvider,
+                LiveQueryProviderDecorator.create(Duration.ofMillis(2000)),
+                UpdateReferencesFirstQueryProviderDecorator.create());
+    }
+
+    @After
+    public void tearDown() {
+        repository.clear().blockingAwait();
+        repository.close();
+    }
+
+    @Test
+    public void testReferencesOfLiveNotificationsAreResolvedInBatches() throws InterruptedException {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(productCount));
+
+        TestObserver<Notification<Product>> productObserver = products
+                .query()
+                .queryAndObserve()
+                .filter(n -> !n.isEmpty())
+                .test();
+        Thread.sleep(500);
+
+        resolveCount.set(0);
+        resolveAllCount.set(0);
+        products.update(productList).blockingAwait();
+
+        productObserver
+                .assertOf(countExactly(productCount))
+                .assertValueAt(0, n -> n.isCreate() && n.newValue().inventory() != null);
+
+        // Stored documents refer to inventories and vendors by key only, so per-notification lookup would resolve
+        // at least one reference per product
+        Assert.assertEquals(0, resolveCount.get());
+        Assert.assertTrue("Resolved " + resolveAllCount.get() + " times", resolveAllCount.get() < productCount / 2);
+
+        resolveAllCount.set(0);
+        Observable.fromIterable(productList)
+                .concatMapCompletable(p -> products.update(p.toBuilder().price(p.price() + 1).build()).ignoreElement())
+                .blockingAwait();
+
+        productObserver
+                .assertOf(countExactly(productCount * 2))
+                .assertValueAt(productCount, n -> n.isModify() && n.newValue().inventory() != null);
+
+        Assert.assertEquals(0, resolveCount.get());
+        Assert.assertTrue("Resolved " + resolveAllCount.get() + " times", resolveAllCount.get() < productCount / 2);
+    }
+
+    private class CountingResolver implements MetaObjectResolver {
+        private final MetaObjectResolver resolver;
+
+        private CountingResolver(MetaObjectResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        @Override
+        public <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key) {
+            resolveCount.incrementAndGet();
+            return resolver.resolve(metaClass, key);
+        }
+
+        @Override
+        public <K, S> Observable<S> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+            resolveAllCount.incrementAndGet();
+            return resolver.resolveAll(metaClass, keys);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
 
 import static com.slimgears.rxrepo.orientdb.OrientDbObjectConverter.toOrientDb;
 
@@ -45,4 +46,9 @@ public class OrientDbMappingStatementExecutor implements SqlStatementExecutor {
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
         return underlyingExecutor.executeLiveQuery(toOrientDb(statement));
     }
+
+    @Override
+    public Completable executeTransaction(Function<SqlStatementExecutor, Completable> body) {
+        return underlyingExecutor.executeTransaction(executor -> body.apply(decorate(executor)));
+    }
 }
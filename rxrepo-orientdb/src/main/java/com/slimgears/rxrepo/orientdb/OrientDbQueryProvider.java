@@ -74,6 +74,21 @@ public class OrientDbQueryProvider extends SqlQueryProvider {
                 .doOnComplete(() -> log.debug("Total insert time: {}s", stopwatch.elapsed(TimeUnit.SECONDS)));
     }
 
+    /**
+     * Batches, inserted within transaction, join the transaction of the session
+     */
+    @Override
+    protected SqlQueryProvider withStatementExecutor(SqlStatementExecutor statementExecutor) {
+        return new OrientDbQueryProvider(
+                statementProvider,
+                statementExecutor,
+                schemaProvider,
+                referenceResolver,
+                SchedulingProvider.immediate(),
+                dbSessionProvider,
+                bufferSize);
+    }
+
     private <S> void createAndSaveElements(MetaClass<S> metaClass, Iterable<S> entities) {
         Table<MetaClass<?>, Object, OElement> queryCache = HashBasedTable.create();
         AtomicLong seqNum = new AtomicLong();
@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.orientdb;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.index.ORuntimeKeyIndexDefinition;
@@ -8,17 +9,23 @@ import com.orientechnologies.orient.core.metadata.schema.OProperty;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.metadata.sequence.OSequence;
 import com.orientechnologies.orient.core.metadata.sequence.OSequenceLibrary;
+import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.binary.impl.OLinkSerializer;
 import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.annotations.Searchable;
 import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.rxrepo.util.CompositeIndexInfo;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -49,7 +56,19 @@ class OrientDbSchemaProvider implements SchemaProvider {
     @Override
     public <T> Completable createOrUpdate(MetaClass<T> metaClass) {
         return sequenceCreated.concatWith(Completable
-                .fromAction(() -> dbSessionProvider.withSession(dbSession -> (OClass)createClass(dbSession, metaClass))));
+                .fromAction(() -> dbSessionProvider.withSession(dbSession -> dbSession.getTransaction().isActive()
+                        ? createClassInSeparateSession(metaClass)
+                        : (OClass)createClass(dbSession, metaClass))));
+    }
+
+    /**
+     * Schema cannot be changed while transaction is active, so the class is created by another session
+     */
+    private OClass createClassInSeparateSession(MetaClass<?> metaClass) {
+        return Single
+                .fromCallable(() -> dbSessionProvider.withSession(dbSession -> (OClass)createClass(dbSession, metaClass)))
+                .subscribeOn(Schedulers.io())
+                .blockingGet();
     }
 
     @Override
@@ -94,7 +113,7 @@ class OrientDbSchemaProvider implements SchemaProvider {
                         null);
             } else {
                 log.trace("{}: Adding simple key index", className);
-                addIndex(oClass, metaClassWithKey.keyProperty(), true);
+                addIndex(oClass, metaClassWithKey.keyProperty(), true, false);
             }
 
             if (!oClass.existsProperty(OrientDbQueryProvider.sequenceNumField)) {
@@ -105,21 +124,49 @@ class OrientDbSchemaProvider implements SchemaProvider {
         log.trace("{}: Adding indexes for properties", className);
         Streams.fromIterable(metaClass.properties())
                 .filter(p -> p.hasAnnotation(Indexable.class) && !p.hasAnnotation(Key.class))
-                .forEach(p -> addIndex(oClass, p, p.getAnnotation(Indexable.class).unique()));
+                .forEach(p -> addIndex(oClass, p, p.getAnnotation(Indexable.class).unique(), p.getAnnotation(Indexable.class).ordered()));
+
+        CompositeIndexInfo.of(metaClass).forEach(index -> addCompositeIndex(oClass, index));
+        addSearchIndex(oClass, metaClass);
 
         log.trace("Class {} creation finished", className);
 
         return oClass;
     }
 
-    private static void addIndex(OClass oClass, PropertyMeta<?, ?> propertyMeta, boolean unique) {
+    private static void addIndex(OClass oClass, PropertyMeta<?, ?> propertyMeta, boolean unique, boolean ordered) {
         log.trace(">> {}: Adding property {} index", oClass.getName(), propertyMeta.name());
-        OClass.INDEX_TYPE indexType = unique ? OClass.INDEX_TYPE.UNIQUE_HASH_INDEX : OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX;
-        String propertyName = PropertyMetas.isEmbedded(propertyMeta)
+        OClass.INDEX_TYPE indexType = toIndexType(unique, ordered);
+        addIndex(oClass, toIndexedPropertyName(propertyMeta), indexType);
+        log.trace("<< {}: Adding property {} index", oClass.getName(), propertyMeta.name());
+    }
+
+    private static void addCompositeIndex(OClass oClass, CompositeIndexInfo<?> index) {
+        String indexName = oClass.getName() + "." + index.name() + "Index";
+        if (oClass.getClassIndex(indexName) != null) {
+            return;
+        }
+        log.trace(">> {}: Adding composite index {}", oClass.getName(), index);
+        String[] propertyNames = index.properties()
+                .stream()
+                .map(OrientDbSchemaProvider::toIndexedPropertyName)
+                .toArray(String[]::new);
+        oClass.createIndex(indexName, toIndexType(index.unique(), index.ordered()), propertyNames);
+        log.trace("<< {}: Adding composite index {}", oClass.getName(), index);
+    }
+
+    private static String toIndexedPropertyName(PropertyMeta<?, ?> propertyMeta) {
+        return PropertyMetas.isEmbedded(propertyMeta)
                 ? propertyMeta.name() + "AsString"
                 : propertyMeta.name();
-        addIndex(oClass, propertyName, indexType);
-        log.trace("<< {}: Adding property {} index", oClass.getName(), propertyMeta.name());
+    }
+
+    private static OClass.INDEX_TYPE toIndexType(boolean unique, boolean ordered) {
+        if (ordered) {
+            // SB-tree indexes, usable for range queries and sorting
+            return unique ? OClass.INDEX_TYPE.UNIQUE : OClass.INDEX_TYPE.NOTUNIQUE;
+        }
+        return unique ? OClass.INDEX_TYPE.UNIQUE_HASH_INDEX : OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX;
     }
 
     private static void addIndex(OClass oClass, String propertyName, OClass.INDEX_TYPE indexType) {
@@ -130,6 +177,35 @@ class OrientDbSchemaProvider implements SchemaProvider {
         log.trace("<< {}: Adding property {} index of type {}", oClass.getName(), propertyName, indexType);
     }
 
+    /**
+     * Own {@link Searchable} string properties of the class, covered by Lucene full-text index
+     * (see {@link #searchIndexName(MetaClass)})
+     */
+    static ImmutableList<PropertyMeta<?, ?>> searchIndexProperties(MetaClass<?> metaClass) {
+        return Streams.fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Searchable.class) && p.type().getRawType() == String.class)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    static String searchIndexName(MetaClass<?> metaClass) {
+        return toClassName(metaClass) + ".searchIndex";
+    }
+
+    private static void addSearchIndex(OClass oClass, MetaClass<?> metaClass) {
+        String indexName = searchIndexName(metaClass);
+        String[] fields = searchIndexProperties(metaClass).stream().map(PropertyMeta::name).toArray(String[]::new);
+        if (fields.length == 0 || oClass.getClassIndex(indexName) != null) {
+            return;
+        }
+        log.trace(">> {}: Adding full-text index on {}", oClass.getName(), Arrays.toString(fields));
+        // Leading wildcards are required for substring lookups. Stop words are disabled, as otherwise
+        // words like 'and' would never be found, while search text semantics is plain substring match
+        ODocument metadata = new ODocument().field("allowLeadingWildcard", true);
+        Arrays.stream(fields).forEach(field -> metadata.field(field + "_stopwords", Collections.emptyList()));
+        oClass.createIndex(indexName, OClass.INDEX_TYPE.FULLTEXT.name(), null, metadata, "LUCENE", fields);
+        log.trace("<< {}: Adding full-text index on {}", oClass.getName(), Arrays.toString(fields));
+    }
+
     @SuppressWarnings("unchecked")
     private static <T extends HasMetaClass<T>> MetaClass<T> toMetaClass(TypeToken<?> typeToken) {
         return MetaClasses.forToken((TypeToken<T>)typeToken);
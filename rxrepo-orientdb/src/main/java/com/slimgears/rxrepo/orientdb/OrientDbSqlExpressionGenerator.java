@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.orientdb;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
@@ -11,11 +12,12 @@ import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.rxrepo.util.SearchTextUtils;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
 import com.slimgears.util.generic.MoreStrings;
 
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -41,15 +43,57 @@ public class OrientDbSqlExpressionGenerator extends DefaultSqlExpressionGenerato
 
     @SuppressWarnings("unchecked")
     private String onVisitSearchTextExpression(Function<? super ObjectExpression<?, ?>, String> visitor, BooleanBinaryOperationExpression<?, ?, String> expression, Supplier<String> visitedExpression) {
-        String searchText = ((ConstantExpression<?, String>)expression.right()).value()
-                .replace("\\", "\\\\");
+        String rawSearchText = ((ConstantExpression<?, String>)expression.right()).value();
+        String searchText = rawSearchText.replace("\\", "\\\\");
 
         String concat = PropertyExpressions.searchableProperties(expression.left())
                 .map(PropertyExpression::asString)
                 .map(visitor)
                 .collect(Collectors.joining(" + ' ' + "));
 
-        return formatAndFixQuotes("((%s) containsText  '%s')").reduce(expression, concat, searchText);
+        String containsText = formatAndFixQuotes("((%s) containsText  '%s')").reduce(expression, concat, searchText);
+
+        // Full-text index lookup narrows down candidates, which are then matched exactly by containsText
+        return searchIndexOf(expression.left())
+                .flatMap(indexName -> searchTextToLuceneQuery(rawSearchText)
+                        .map(query -> String.format("(SEARCH_INDEX('%s', '%s') = true AND %s)", indexName, query, containsText)))
+                .orElse(containsText);
+    }
+
+    /**
+     * Returns name of the full-text index, if searchable text of the target consists only of the properties, covered by the index
+     */
+    private static Optional<String> searchIndexOf(ObjectExpression<?, ?> target) {
+        if (unwrap(target).type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        MetaClass<?> metaClass = MetaClasses.forTokenUnchecked(target.reflect().objectType());
+        Set<PropertyMeta<?, ?>> indexedProperties = ImmutableSet.copyOf(OrientDbSchemaProvider.searchIndexProperties(metaClass));
+        boolean allIndexed = !indexedProperties.isEmpty() && PropertyExpressions.searchableProperties(target)
+                .allMatch(p -> Objects.equals(p.target(), target) && indexedProperties.contains(p.property()));
+        return allIndexed
+                ? Optional.of(OrientDbSchemaProvider.searchIndexName(metaClass))
+                : Optional.empty();
+    }
+
+    /**
+     * Converts search text into Lucene query, requiring every alphanumeric run of the search text to be part of some term.
+     * Any substring match satisfies such query, so the lookup never loses results.
+     */
+    private static Optional<String> searchTextToLuceneQuery(String searchText) {
+        String query = Arrays
+                .stream(searchText.split("[^A-Za-z0-9]+"))
+                .filter(t -> !t.isEmpty())
+                .map(t -> "+*" + t.toLowerCase(Locale.ROOT) + "*")
+                .collect(Collectors.joining(" "));
+        return !query.isEmpty() ? Optional.of(query) : Optional.empty();
+    }
+
+    private static ObjectExpression<?, ?> unwrap(ObjectExpression<?, ?> expression) {
+        while (expression instanceof DelegateExpression && !(expression instanceof PropertyExpression)) {
+            expression = ((DelegateExpression<?, ?>)expression).delegate();
+        }
+        return expression;
     }
 
     private String onVisitBinaryExpression(Function<? super ObjectExpression<?, ?>, String> visitor, BooleanBinaryOperationExpression<?, ?, ?> expression, Supplier<String> visitedExpression) {
@@ -89,13 +133,4 @@ public class OrientDbSqlExpressionGenerator extends DefaultSqlExpressionGenerato
 
         return visitor.apply(expression);
     }
-
-    private String searchTextToWildcard(String searchText) {
-        searchText = searchText.replaceAll("([:+\\-*(){}\\[\\]\\\\/;%])", "?");
-        searchText = Arrays
-                .stream(searchText.split("\\s"))
-                .map(t -> "+*" + t + "*")
-                .collect(Collectors.joining(" && "));
-        return searchText;
-    }
 }
@@ -32,9 +32,15 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
     private final static AtomicLong operationCounter = new AtomicLong();
     private final static Logger log = LoggerFactory.getLogger(OrientDbStatementExecutor.class);
     private final OrientDbSessionProvider sessionProvider;
+    private final Thread transactionThread;
 
     OrientDbStatementExecutor(OrientDbSessionProvider sessionProvider) {
+        this(sessionProvider, null);
+    }
+
+    private OrientDbStatementExecutor(OrientDbSessionProvider sessionProvider, Thread transactionThread) {
         this.sessionProvider = sessionProvider;
+        this.transactionThread = transactionThread;
     }
 
     @Override
@@ -82,6 +88,7 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
         return Observable.<OrientDbLiveQueryListener.LiveQueryNotification>create(
                 emitter -> {
+                    checkTransactionThread();
                     logStatement("Live querying", statement);
                     sessionProvider.withSession(dbSession -> {
                         OLiveQueryMonitor monitor = dbSession.live(
@@ -101,20 +108,59 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                         res.sequenceNumber()));
     }
 
+    /**
+     * Runs {@code body} within transaction of the current thread's session. As the session (and its transaction)
+     * is bound to the thread, {@code body} is awaited on this thread, and its statements must be executed
+     * without switching threads: a statement executed on another thread fails with {@link IllegalStateException}
+     * (rolling back the transaction) instead of silently escaping it.
+     */
+    @Override
+    public Completable executeTransaction(io.reactivex.functions.Function<SqlStatementExecutor, Completable> body) {
+        if (transactionThread != null) {
+            return Completable.error(new IllegalStateException("Nested transactions are not supported"));
+        }
+        return Completable.fromAction(() -> sessionProvider.withSession(dbSession -> {
+            SqlStatementExecutor transactionExecutor = new OrientDbStatementExecutor(sessionProvider, Thread.currentThread());
+            dbSession.begin();
+            try {
+                Completable.defer(() -> body.apply(transactionExecutor)).blockingAwait();
+                dbSession.commit();
+            } catch (OConcurrentModificationException | ORecordDuplicatedException e) {
+                dbSession.rollback();
+                throw new ConcurrentModificationException(e.getMessage(), e);
+            } catch (RuntimeException e) {
+                dbSession.rollback();
+                throw e;
+            }
+        }));
+    }
+
     private Observable<PropertyResolver> toObservable(Function<ODatabaseDocument, OResultSet> resultSetSupplier) {
         return Observable.<OResult>create(
-                emitter -> sessionProvider.withSession(dbSession -> {
-                    long id = operationCounter.incrementAndGet();
-                    OResultSet resultSet = resultSetSupplier.apply(dbSession);
-                    resultSet.stream()
-                            .peek(res -> log.trace("[{}] Received: {}", id, res))
-                            .forEach(emitter::onNext);
-                    resultSet.close();
-                    emitter.onComplete();
-                }))
+                emitter -> {
+                    checkTransactionThread();
+                    sessionProvider.withSession(dbSession -> {
+                        long id = operationCounter.incrementAndGet();
+                        OResultSet resultSet = resultSetSupplier.apply(dbSession);
+                        resultSet.stream()
+                                .peek(res -> log.trace("[{}] Received: {}", id, res))
+                                .forEach(emitter::onNext);
+                        resultSet.close();
+                        emitter.onComplete();
+                    });
+                })
                 .map(res -> OResultPropertyResolver.create(sessionProvider, res));
     }
 
+    private void checkTransactionThread() {
+        if (transactionThread != null && transactionThread != Thread.currentThread()) {
+            throw new IllegalStateException(MoreStrings.format(
+                    "Transaction statement is executed on thread {}, while transaction is bound to thread {}",
+                    Thread.currentThread().getName(),
+                    transactionThread.getName()));
+        }
+    }
+
     private void logStatement(String title, SqlStatement statement) {
         log.trace("[{}] {}: {}", operationCounter.get(), title, lazy(() -> toString(statement)));
     }
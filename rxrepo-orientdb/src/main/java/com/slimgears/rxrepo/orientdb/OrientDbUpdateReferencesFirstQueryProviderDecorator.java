@@ -21,4 +21,9 @@ public class OrientDbUpdateReferencesFirstQueryProviderDecorator extends UpdateR
     public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
         return underlyingProvider.insert(metaClass, entities, recursive);
     }
+
+    @Override
+    protected QueryProvider decorateTransaction(QueryProvider transaction) {
+        return new OrientDbUpdateReferencesFirstQueryProviderDecorator(transaction);
+    }
 }
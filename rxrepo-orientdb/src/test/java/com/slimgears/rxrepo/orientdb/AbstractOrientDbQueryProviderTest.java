@@ -25,6 +25,7 @@ import java.time.Duration;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public abstract class AbstractOrientDbQueryProviderTest extends AbstractRepositoryTest {
     private static final String dbName = "{}_{}";
@@ -123,6 +124,21 @@ public abstract class AbstractOrientDbQueryProviderTest extends AbstractReposito
         super.testAddProductThenUpdateInventoryInOrder();
     }
 
+    @Test
+    public void testSearchTextUsingFullTextIndex() {
+        inventories.update(IntStream.range(0, 20)
+                .mapToObj(i -> Inventory.builder()
+                        .id(UniqueId.inventoryId(i))
+                        .name("Inventory " + i)
+                        .build())
+                .collect(Collectors.toList()))
+                .blockingAwait();
+
+        Assert.assertEquals(Long.valueOf(11), inventories.findAll(Inventory.$.searchText("Inventory 1")).count().blockingGet());
+        Assert.assertEquals(Long.valueOf(1), inventories.findAll(Inventory.$.searchText("ory 15")).count().blockingGet());
+        Assert.assertEquals(Long.valueOf(0), inventories.findAll(Inventory.$.searchText("Inventory 21")).count().blockingGet());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testCreateModifyOrder() throws InterruptedException {
@@ -68,6 +68,20 @@ public class ExpressionsTest {
                 .build()));
     }
 
+    @Test
+    public void testSearchTextOfIndexedModelIsPushedDownToSearchIndex() {
+        String sql = new OrientDbSqlExpressionGenerator().toSqlExpression(Inventory.$.searchText("ory 1"));
+        Assert.assertTrue(sql, sql.startsWith("(SEARCH_INDEX('Inventory.searchIndex', '+*ory* +*1*') = true AND "));
+        Assert.assertTrue(sql, sql.contains("containsText  'ory 1'"));
+    }
+
+    @Test
+    public void testSearchTextOfReferencedPropertiesIsNotPushedDown() {
+        String sql = new OrientDbSqlExpressionGenerator().toSqlExpression(Product.$.searchText("Product 1"));
+        Assert.assertFalse(sql, sql.contains("SEARCH_INDEX"));
+        Assert.assertTrue(sql, sql.contains("containsText  'Product 1'"));
+    }
+
     @Test
     public void testExpressionToString() {
         Assert.assertEquals("Equals(Length(Product.$.name), Product.$.price)", Product.$.name.length().eq(Product.$.price).toString());
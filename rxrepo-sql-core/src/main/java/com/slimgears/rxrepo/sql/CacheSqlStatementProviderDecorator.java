@@ -0,0 +1,102 @@
+package com.slimgears.rxrepo.sql;
+
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.nanometer.Metrics;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryShape;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Caches statements generated for queries, aggregations, updates and deletes, keyed by {@link QueryShape}, so
+ * queries differing only by constant values share the same statement text, with the constants bound as arguments.
+ * Statements which depend on entity contents (inserts and entity updates) are passed through to the underlying provider.
+ */
+public class CacheSqlStatementProviderDecorator implements SqlStatementProvider {
+    private final static MetricCollector metrics = Metrics.collector(CacheSqlStatementProviderDecorator.class);
+    private final SqlStatementProvider underlyingProvider;
+    private final SqlStatementCache cache;
+
+    private CacheSqlStatementProviderDecorator(SqlStatementProvider underlyingProvider, SqlStatementCache cache) {
+        this.underlyingProvider = underlyingProvider;
+        this.cache = cache;
+    }
+
+    public static SqlStatementProvider decorate(SqlStatementProvider statementProvider, int maxSize) {
+        return maxSize > 0
+                ? decorate(statementProvider, SqlStatementCache.create(maxSize, metrics.name("statementCache")))
+                : statementProvider;
+    }
+
+    public static SqlStatementProvider decorate(SqlStatementProvider statementProvider, SqlStatementCache cache) {
+        return new CacheSqlStatementProviderDecorator(statementProvider, cache);
+    }
+
+    @Override
+    public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo) {
+        return cached("query", QueryShape.of(queryInfo), () -> underlyingProvider.forQuery(queryInfo));
+    }
+
+    @Override
+    public <K, S, T, R> SqlStatement forAggregation(QueryInfo<K, S, T> queryInfo, ObjectExpression<T, R> aggregation, String projectedName) {
+        return cached(
+                "aggregation",
+                QueryShape.of(aggregation, projectedName, QueryShape.of(queryInfo)),
+                () -> underlyingProvider.forAggregation(queryInfo, aggregation, projectedName));
+    }
+
+    @Override
+    public <K, S> SqlStatement forUpdate(UpdateInfo<K, S> updateInfo) {
+        return cached("update", QueryShape.of(updateInfo), () -> underlyingProvider.forUpdate(updateInfo));
+    }
+
+    @Override
+    public <K, S> SqlStatement forDelete(DeleteInfo<K, S> deleteInfo) {
+        return cached("delete", QueryShape.of(deleteInfo), () -> underlyingProvider.forDelete(deleteInfo));
+    }
+
+    @Override
+    public <K, S> SqlStatement forInsert(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver referenceResolver) {
+        return underlyingProvider.forInsert(metaClass, propertyResolver, referenceResolver);
+    }
+
+    @Override
+    public <K, S> SqlStatement forInsertOrUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver referenceResolver) {
+        return underlyingProvider.forInsertOrUpdate(metaClass, propertyResolver, referenceResolver);
+    }
+
+    @Override
+    public <K, S> SqlStatement forUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver referenceResolver) {
+        return underlyingProvider.forUpdate(metaClass, propertyResolver, referenceResolver);
+    }
+
+    @Override
+    public <K, S> SqlStatement forDrop(MetaClassWithKey<K, S> metaClass) {
+        return underlyingProvider.forDrop(metaClass);
+    }
+
+    @Override
+    public SqlStatement forDrop() {
+        return underlyingProvider.forDrop();
+    }
+
+    private SqlStatement cached(String operation, QueryShape shape, Supplier<SqlStatement> generator) {
+        Object key = Arrays.asList(operation, shape.key());
+        SqlStatement statement = cache.get(key);
+        if (statement != null) {
+            return statement.withArgs(shape.args());
+        }
+        statement = generator.get();
+        // Statements with constants inlined into text (or bound in different order) cannot be shared across the shape
+        if (shape.isBoundBy(statement.args())) {
+            cache.put(key, statement);
+        }
+        return statement;
+    }
+}
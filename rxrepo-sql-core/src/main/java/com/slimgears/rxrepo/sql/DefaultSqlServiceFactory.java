@@ -29,8 +29,9 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
             @Nonnull Function<SqlServiceFactory, SqlExpressionGenerator> expressionGenerator,
             @Nonnull Function<SqlServiceFactory, SqlAssignmentGenerator> assignmentGenerator,
             @Nonnull Function<SqlServiceFactory, QueryProvider> queryProviderGenerator,
-            @Nonnull Function<SqlServiceFactory, SchedulingProvider> executorPool) {
-        this.statementProvider = Lazy.of(() -> statementProvider.apply(this));
+            @Nonnull Function<SqlServiceFactory, SchedulingProvider> executorPool,
+            int statementCacheSize) {
+        this.statementProvider = Lazy.of(() -> CacheSqlStatementProviderDecorator.decorate(statementProvider.apply(this), statementCacheSize));
         this.statementExecutor = Lazy.of(() -> statementExecutor.apply(this));
         this.referenceResolver = Lazy.of(() -> referenceResolver.apply(this));
         this.schemaProvider = Lazy.of(() -> CacheSchemaProviderDecorator.decorate(schemaProvider.apply(this)));
@@ -91,6 +92,7 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
 
     static class Builder extends SqlServiceFactory.Builder {
         private int maxNotificationQueues = 10;
+        private int statementCacheSize = 1000;
         private Duration maxNotificationQueueIdleDuration = Duration.ofSeconds(30);
 
         private Function<SqlServiceFactory, SqlStatementProvider> statementProvider;
@@ -165,6 +167,14 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
             return this;
         }
 
+        /**
+         * Maximal number of generated statements to cache. Non-positive value disables statement caching.
+         */
+        public SqlServiceFactory.Builder statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
         @Override
         public SqlServiceFactory build() {
             return new DefaultSqlServiceFactory(
@@ -175,7 +185,8 @@ public class DefaultSqlServiceFactory implements SqlServiceFactory {
                     requireNonNull(expressionGenerator),
                     requireNonNull(assignmentGenerator),
                     requireNonNull(queryProviderGenerator),
-                    requireNonNull(schedulingProvider));
+                    requireNonNull(schedulingProvider),
+                    statementCacheSize);
         }
     }
 }
@@ -35,7 +35,7 @@ public class SqlQueryProvider implements QueryProvider {
     protected final SqlStatementProvider statementProvider;
     private final SqlStatementExecutor statementExecutor;
     protected final SchemaProvider schemaProvider;
-    private final ReferenceResolver referenceResolver;
+    protected final ReferenceResolver referenceResolver;
     private final SchedulingProvider schedulingProvider;
     private final Map<SqlStatement, Observable<Notification<PropertyResolver>>> liveQueriesCache = new ConcurrentHashMap<>();
 
@@ -68,9 +68,9 @@ public class SqlQueryProvider implements QueryProvider {
                 .map(meta -> schemaProvider.createOrUpdate(metaClass)
                         .doOnSubscribe(d -> log.debug("Beginning creating class {}", lazy(metaClass::simpleName)))
                         .doOnComplete(() -> log.debug("Finished creating class {}", lazy(metaClass::simpleName)))
-                        .andThen(Observable.fromIterable(entities)
-                                .flatMapSingle(e -> insert(metaClass, e))
-                                .ignoreElements()))
+                        .andThen(statementExecutor.executeCommandBatch(Iterables.transform(
+                                entities,
+                                e -> statementProvider.forInsert(metaClass, e, referenceResolver)))))
                 .orElseGet(Completable::complete);
     }
 
@@ -239,6 +239,19 @@ public class SqlQueryProvider implements QueryProvider {
         });
     }
 
+    /**
+     * Transaction is delegated to {@link SqlStatementExecutor#executeTransaction(Function)}. Operations of the transaction
+     * are executed by a provider, bound to transactional executor, which emits results on the executing thread.
+     */
+    @Override
+    public Completable transaction(Function<QueryProvider, Completable> body) {
+        return statementExecutor.executeTransaction(executor -> body.apply(withStatementExecutor(executor)));
+    }
+
+    protected SqlQueryProvider withStatementExecutor(SqlStatementExecutor statementExecutor) {
+        return new SqlQueryProvider(statementProvider, statementExecutor, schemaProvider, referenceResolver, SchedulingProvider.immediate());
+    }
+
     @Override
     public Completable dropAll() {
         return Completable.defer(() -> {
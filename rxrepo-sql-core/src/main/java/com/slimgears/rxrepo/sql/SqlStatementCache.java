@@ -0,0 +1,108 @@
+package com.slimgears.rxrepo.sql;
+
+import com.slimgears.nanometer.MetricCollector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of generated {@link SqlStatement}s. Hit, miss and eviction counts, as well as current size,
+ * are recorded as gauges of the given {@link MetricCollector}.
+ */
+public class SqlStatementCache {
+    private final int maxSize;
+    private final Map<Object, SqlStatement> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final MetricCollector.Gauge hitsGauge;
+    private final MetricCollector.Gauge missesGauge;
+    private final MetricCollector.Gauge evictionsGauge;
+    private final MetricCollector.Gauge sizeGauge;
+
+    private SqlStatementCache(int maxSize, MetricCollector metrics) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Object, SqlStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, SqlStatement> eldest) {
+                if (size() <= SqlStatementCache.this.maxSize) {
+                    return false;
+                }
+                evictionsGauge.record(evictions.incrementAndGet());
+                return true;
+            }
+        };
+        this.hitsGauge = metrics.gauge("hits");
+        this.missesGauge = metrics.gauge("misses");
+        this.evictionsGauge = metrics.gauge("evictions");
+        this.sizeGauge = metrics.gauge("size");
+    }
+
+    public static SqlStatementCache create(int maxSize) {
+        return create(maxSize, MetricCollector.empty());
+    }
+
+    public static SqlStatementCache create(int maxSize, MetricCollector metrics) {
+        return new SqlStatementCache(maxSize, metrics);
+    }
+
+    /**
+     * Returns statement cached for the given key, or generates and caches a new one. The generator is invoked
+     * outside of the cache lock, so concurrent misses on the same key may generate the statement more than once.
+     */
+    public SqlStatement computeIfAbsent(Object key, Supplier<SqlStatement> generator) {
+        SqlStatement statement = get(key);
+        if (statement == null) {
+            statement = generator.get();
+            put(key, statement);
+        }
+        return statement;
+    }
+
+    public SqlStatement get(Object key) {
+        SqlStatement statement;
+        synchronized (cache) {
+            statement = cache.get(key);
+        }
+        if (statement != null) {
+            hitsGauge.record(hits.incrementAndGet());
+        } else {
+            missesGauge.record(misses.incrementAndGet());
+        }
+        return statement;
+    }
+
+    public void put(Object key, SqlStatement statement) {
+        synchronized (cache) {
+            cache.put(key, statement);
+            sizeGauge.record(cache.size());
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            sizeGauge.record(0);
+        }
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.functions.Function;
 
 public interface SqlStatementExecutor {
     Observable<PropertyResolver> executeQuery(SqlStatement statement);
@@ -12,4 +13,19 @@ public interface SqlStatementExecutor {
     Single<Integer> executeCommandReturnCount(SqlStatement statement);
     Completable executeCommand(SqlStatement statement);
     Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement);
+
+    default Completable executeCommandBatch(Iterable<SqlStatement> statements) {
+        return Observable.fromIterable(statements)
+                .flatMapSingle(statement -> executeCommandReturnEntries(statement).take(1).singleOrError())
+                .ignoreElements();
+    }
+
+    /**
+     * Runs {@code body} with executor, which executes all statements within a single transaction. The transaction
+     * is committed when completable, returned by {@code body}, completes, and rolled back when it fails.
+     * Default implementation is not transactional.
+     */
+    default Completable executeTransaction(Function<SqlStatementExecutor, Completable> body) {
+        return Completable.defer(() -> body.apply(this));
+    }
 }
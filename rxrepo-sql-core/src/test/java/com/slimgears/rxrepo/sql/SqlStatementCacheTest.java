@@ -0,0 +1,26 @@
+package com.slimgears.rxrepo.sql;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SqlStatementCacheTest {
+    @Test
+    public void testLeastRecentlyUsedStatementIsEvicted() {
+        SqlStatementCache cache = SqlStatementCache.create(2);
+        AtomicInteger generated = new AtomicInteger();
+
+        cache.computeIfAbsent("a", () -> SqlStatement.create("a" + generated.incrementAndGet()));
+        cache.computeIfAbsent("b", () -> SqlStatement.create("b" + generated.incrementAndGet()));
+        Assert.assertEquals("a1", cache.computeIfAbsent("a", () -> SqlStatement.create("a" + generated.incrementAndGet())).statement());
+        cache.computeIfAbsent("c", () -> SqlStatement.create("c" + generated.incrementAndGet()));
+        Assert.assertEquals("b4", cache.computeIfAbsent("b", () -> SqlStatement.create("b" + generated.incrementAndGet())).statement());
+
+        Assert.assertEquals(4, generated.get());
+        Assert.assertEquals(1, cache.hitCount());
+        Assert.assertEquals(4, cache.missCount());
+        Assert.assertEquals(2, cache.evictionCount());
+        Assert.assertEquals(2, cache.size());
+    }
+}
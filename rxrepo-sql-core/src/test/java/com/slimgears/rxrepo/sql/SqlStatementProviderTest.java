@@ -124,4 +124,24 @@ public class SqlStatementProviderTest {
                         "limit 100", statement.statement());
         Assert.assertArrayEquals(new Object[]{"aa", "bbb"}, statement.args());
     }
+
+    @Test
+    public void testCachedStatementIsReusedForSameQueryShape() {
+        SqlStatementCache cache = SqlStatementCache.create(10);
+        SqlStatementProvider cachedProvider = CacheSqlStatementProviderDecorator.decorate(statementProvider, cache);
+
+        SqlStatement first = cachedProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.contains("substr").and(Product.$.price.lessThan(100)))
+                .build());
+        SqlStatement second = cachedProvider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.contains("other").and(Product.$.price.lessThan(200)))
+                .build());
+
+        Assert.assertEquals(1, cache.hitCount());
+        Assert.assertSame(first.statement(), second.statement());
+        Assert.assertArrayEquals(new Object[]{"substr", 100}, first.args());
+        Assert.assertArrayEquals(new Object[]{"other", 200}, second.args());
+    }
 }
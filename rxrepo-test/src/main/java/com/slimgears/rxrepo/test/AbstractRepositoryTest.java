@@ -14,9 +14,11 @@ import com.slimgears.util.junit.AnnotationRulesJUnit;
 import com.slimgears.util.stream.Streams;
 import com.slimgears.util.test.logging.LogLevel;
 import com.slimgears.util.test.logging.UseLogLevel;
+import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
 import io.reactivex.subjects.CompletableSubject;
 import org.junit.*;
@@ -34,6 +36,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.slimgears.rxrepo.test.TestUtils.*;
 import static java.util.Objects.requireNonNull;
@@ -1364,6 +1367,28 @@ public abstract class AbstractRepositoryTest {
                 .assertValueAt(1, 1L);
     }
 
+    @Test
+    public void testObserveMinAfterExtremeRemoved() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(20));
+        products.update(productList).test().await().assertNoErrors();
+        int minPrice = productList.stream().mapToInt(Product::price).min().getAsInt();
+        int nextMinPrice = productList.stream().mapToInt(Product::price).filter(p -> p > minPrice).min().getAsInt();
+
+        TestObserver<Integer> testObserver = products.query()
+                .liveSelect(Product.$.price)
+                .aggregate(Aggregator.min())
+                .test();
+
+        testObserver.awaitCount(1).assertValueAt(0, minPrice);
+
+        products.update(Products.createOne(100).toBuilder().price(minPrice + 1).build()).ignoreElement().blockingAwait();
+        products.delete().where(Product.$.price.eq(minPrice)).execute().test().await().assertNoErrors();
+
+        testObserver.awaitCount(2)
+                .assertNoErrors()
+                .assertValueAt(1, Math.min(minPrice + 1, nextMinPrice));
+    }
+
     @Test
     @UseLogLevel(LogLevel.DEBUG)
     @Ignore
@@ -1672,4 +1697,281 @@ public abstract class AbstractRepositoryTest {
                 .assertValueAt(1, NotificationPrototype::isDelete);
 
     }
+
+    @Test
+    public void testQueryByIndexedProperty() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+        products.update(productList).test().await().assertNoErrors();
+
+        products.query()
+                .where(Product.$.price.eq(110))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream().filter(p -> p.price() == 110).count());
+
+        products.query()
+                .where(Product.$.price.in(105, 110, 115))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream().filter(p -> p.price() == 105 || p.price() == 110 || p.price() == 115).count());
+
+        products.query()
+                .where(Product.$.price.betweenExclusive(110, 150).and(Product.$.name.startsWith("Product 1")))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream()
+                        .filter(p -> p.price() > 110 && p.price() < 150 && requireNonNull(p.name()).startsWith("Product 1"))
+                        .count());
+
+        products.delete()
+                .where(Product.$.price.greaterThan(150))
+                .execute()
+                .test()
+                .await()
+                .assertNoErrors();
+
+        products.query()
+                .where(Product.$.price.greaterThan(140))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream().filter(p -> p.price() > 140 && p.price() <= 150).count());
+    }
+
+    @Test
+    public void testQueryByCompositeIndex() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+        products.update(productList).test().await().assertNoErrors();
+
+        products.query()
+                .where(Product.$.type.eq(ProductEntity.Type.ComputeHardware).and(Product.$.price.eq(110)))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream().filter(p -> p.type() == ProductEntity.Type.ComputeHardware && p.price() == 110).count());
+
+        products.query()
+                .where(Product.$.type.eq(ProductEntity.Type.ComputerSoftware))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream().filter(p -> p.type() == ProductEntity.Type.ComputerSoftware).count());
+
+        Product product = productList.stream().filter(p -> p.type() == ProductEntity.Type.ComputeHardware).findFirst().orElseThrow(AssertionError::new);
+        products.update(product.toBuilder().type(ProductEntity.Type.ComputerSoftware).price(-1).build()).test().await().assertNoErrors();
+
+        products.query()
+                .where(Product.$.type.eq(ProductEntity.Type.ComputerSoftware).and(Product.$.price.eq(-1)))
+                .count()
+                .test()
+                .await()
+                .assertValue(1L);
+
+        products.query()
+                .where(Product.$.type.eq(ProductEntity.Type.ComputeHardware).and(Product.$.price.eq(product.price())))
+                .count()
+                .test()
+                .await()
+                .assertValue(productList.stream().filter(p -> p.type() == ProductEntity.Type.ComputeHardware && p.price() == product.price()).count() - 1);
+    }
+
+    @Test
+    public void testSeekPagination() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+        products.update(productList).test().await().assertNoErrors();
+
+        List<Product> retrieved = new ArrayList<>();
+        List<Product> page = products.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .limit(15)
+                .retrieveAsList()
+                .blockingGet();
+        while (!page.isEmpty()) {
+            retrieved.addAll(page);
+            page = products.query()
+                    .orderBy(Product.$.price)
+                    .after(page.get(page.size() - 1))
+                    .limit(15)
+                    .retrieveAsList()
+                    .blockingGet();
+        }
+
+        Assert.assertEquals(productList.size(), retrieved.size());
+        Assert.assertEquals(productList.size(), retrieved.stream().map(Product::key).distinct().count());
+        for (int i = 1; i < retrieved.size(); ++i) {
+            Assert.assertTrue(retrieved.get(i - 1).price() <= retrieved.get(i).price());
+        }
+    }
+
+    @Test
+    public void testSeekPaginationRejectsNullableSorting() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(10))
+                .stream()
+                .map(p -> p.key().id() % 2 == 0 ? p.toBuilder().name(null).build() : p)
+                .collect(Collectors.toList());
+        products.update(productList).test().await().assertNoErrors();
+
+        for (Product anchor : Arrays.asList(productList.get(0), productList.get(1))) {
+            Single.defer(() -> products.query()
+                    .orderBy(Product.$.name)
+                    .after(anchor)
+                    .limit(5)
+                    .retrieveAsList())
+                    .test()
+                    .await()
+                    .assertError(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void testObserveAsListUpdates() throws InterruptedException {
+        products.update(Products.createMany(10)).blockingAwait();
+        TestObserver<ListUpdate<Product>> testObserver = products.query()
+                .orderBy(Product.$.name)
+                .limit(5)
+                .liveSelect()
+                .asListUpdates()
+                .test();
+
+        testObserver.awaitCount(1).assertNoErrors();
+        Product product = testObserver.values().get(0).list().get(2);
+
+        products.update(product.toBuilder().name(product.name() + " (updated)").build()).ignoreElement().blockingAwait();
+        products.delete().where(Product.$.key.eq(testObserver.values().get(0).list().get(0).key())).execute().blockingGet();
+        testObserver.awaitCount(3).assertNoErrors();
+
+        List<ListUpdate<Product>> updates = testObserver.values();
+        for (int i = 1; i < updates.size(); ++i) {
+            Assert.assertEquals(updates.get(i).list(), applyChanges(updates.get(i - 1).list(), updates.get(i).changes()));
+        }
+    }
+
+    private static <T> List<T> applyChanges(List<T> list, List<ListChange<T>> changes) {
+        List<T> result = new ArrayList<>(list);
+        changes.stream()
+                .filter(c -> c.oldIndex() != null)
+                .map(ListChange::oldIndex)
+                .sorted(Comparator.reverseOrder())
+                .forEach(index -> result.remove((int)index));
+        changes.stream()
+                .filter(c -> c.newIndex() != null)
+                .sorted(Comparator.comparing(ListChange::newIndex))
+                .forEach(c -> result.add(c.newIndex(), c.item()));
+        return result;
+    }
+
+    @Test
+    public void testSearchTextAfterUpdateAndDelete() throws InterruptedException {
+        List<Product> productList = ImmutableList.copyOf(Products.createMany(100));
+        products.update(productList).test().await().assertNoErrors();
+
+        Assert.assertEquals(Long.valueOf(11), products.findAll(Product.$.searchText("Product 1")).count().blockingGet());
+
+        products.update(productList.get(1).toBuilder().name("Renamed!").build()).test().await().assertNoErrors();
+
+        Assert.assertEquals(Long.valueOf(10), products.findAll(Product.$.searchText("Product 1")).count().blockingGet());
+        Assert.assertEquals(Long.valueOf(1), products.findAll(Product.$.searchText("Renamed!")).count().blockingGet());
+        Assert.assertEquals(Long.valueOf(1), products.findAll(Product.$.searchText("d!")).count().blockingGet());
+        Assert.assertEquals(Long.valueOf(0), products.findAll(Product.$.searchText("Product 1").and(Product.$.price.eq(-1))).count().blockingGet());
+
+        products.delete()
+                .where(Product.$.name.eq("Renamed!"))
+                .execute()
+                .test()
+                .await()
+                .assertValue(1);
+
+        Assert.assertEquals(Long.valueOf(0), products.findAll(Product.$.searchText("Renamed!")).count().blockingGet());
+    }
+
+    @Test
+    public void testTransactionCommitsChangesOfMultipleEntitySets() throws InterruptedException {
+        repository
+                .transaction(tx -> tx.entities(Inventory.metaClass)
+                        .update(Inventory.builder()
+                                .id(UniqueId.inventoryId(1))
+                                .name("Inventory 1")
+                                .build())
+                        .ignoreElement()
+                        .andThen(tx.entities(Product.metaClass)
+                                .update(Product.builder()
+                                        .key(UniqueId.productId(1))
+                                        .name("Product 1")
+                                        .price(1001)
+                                        .build())
+                                .ignoreElement()))
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertComplete();
+
+        Assert.assertEquals(Long.valueOf(1), repository.entities(Inventory.metaClass).query().count().blockingGet());
+        Assert.assertEquals(Long.valueOf(1), products.query().count().blockingGet());
+    }
+
+    @Test
+    public void testTransactionNotificationsAreEmittedOnceAtCommit() throws InterruptedException {
+        products.update(Product.builder()
+                .key(UniqueId.productId(1))
+                .name("Product 1")
+                .price(101)
+                .build())
+                .ignoreElement()
+                .blockingAwait();
+
+        TestObserver<Notification<Product>> productObserver = products
+                .query()
+                .queryAndObserve()
+                .doOnNext(System.out::println)
+                .test();
+
+        productObserver
+                .assertOf(countExactly(1))
+                .assertValueAt(0, Notification::isCreate);
+
+        repository
+                .transaction(tx -> tx.entities(Product.metaClass)
+                        .update(Product.builder()
+                                .key(UniqueId.productId(1))
+                                .name("Product 1")
+                                .price(102)
+                                .build())
+                        .ignoreElement()
+                        // Changes are not observed until the transaction is committed
+                        .andThen(Completable.fromAction(() -> {
+                            Thread.sleep(200);
+                            productObserver.assertValueCount(1);
+                        })))
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertComplete();
+
+        productObserver
+                .assertOf(countExactly(2))
+                .assertValueAt(1, NotificationPrototype::isModify)
+                .assertValueAt(1, n -> requireNonNull(n.newValue()).price() == 102)
+                .assertOf(countLessThan(3));
+    }
+
+    @Test
+    public void testTransactionRollsBackOnError() throws InterruptedException {
+        repository
+                .transaction(tx -> tx.entities(Inventory.metaClass)
+                        .update(Inventory.builder()
+                                .id(UniqueId.inventoryId(1))
+                                .name("Inventory 1")
+                                .build())
+                        .ignoreElement()
+                        .andThen(Completable.error(new IllegalStateException("Transaction aborted"))))
+                .test()
+                .await()
+                .assertError(IllegalStateException.class);
+
+        Assert.assertEquals(Long.valueOf(0), repository.entities(Inventory.metaClass).query().count().blockingGet());
+    }
 }
@@ -10,6 +10,7 @@ import java.util.Date;
 import java.util.List;
 
 @EntityModelWithFilters
+@CompositeIndex(value = {"type", "price"}, ordered = true)
 public interface ProductEntity {
     enum Type {
         ConsumerElectronics,
@@ -21,7 +22,7 @@ public interface ProductEntity {
     @Nullable @Filterable @Searchable String name();
     @Nullable @Searchable Type type();
     @Filterable @Nullable @Searchable Inventory inventory();
-    int price();
+    @Indexable(ordered = true) int price();
     @Nullable List<String> aliases();
     @Nullable List<UniqueId> relatedIds();
     @Nullable Vendor vendor();